@@ -0,0 +1,62 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method whose calls can be combined into a single call to a batch method on the same task object,
+ * for example to replace many single-key lookups against a backend with one multi-key lookup. The task method
+ * must take exactly one argument. The batch method, named by {@link #value()}, must take a single
+ * {@link java.util.List} argument holding the arguments of the combined calls (as they would have been passed
+ * to the task method), and must return a CompletableFuture of a List with exactly one result for each of those
+ * arguments, in the same order. Each result then becomes the result of the corresponding task method call.
+ *
+ * <p>By default, calls on the same task object that become ready to run together are combined, such as those
+ * activated together or that depend on the same completed task method. A call with no others to combine with
+ * is made directly on the task method. If a {@link #windowMs()} is specified, calls are instead collected for
+ * that long after the first one, regardless of how they became ready, and the batch method is then run in a
+ * spawned thread.
+ *
+ * @author Brendan McCarthy
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface Batchable {
+    /**
+     * Name of the batch method.
+     *
+     * @return method name
+     */
+    String value();
+
+    /**
+     * Time to collect calls for before running the batch method, or zero to only combine calls that become ready
+     * together.
+     *
+     * @return milliseconds
+     */
+    long windowMs() default 0;
+}
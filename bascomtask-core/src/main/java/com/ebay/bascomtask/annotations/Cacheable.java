@@ -0,0 +1,68 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method whose results can be reused across Orchestrators for a limited time. Results are held in a
+ * JVM-wide cache keyed on task class, method and argument values, so arguments (and the values of any
+ * CompletableFuture arguments) must have meaningful equals() and hashCode() methods. When a call finds a result in
+ * the cache, its CompletableFuture is completed with that result once its arguments are ready, without running the
+ * task method. Only results from normal completions are cached.
+ *
+ * <p>If {@link #refreshAfterMs()} is set, a result found in the cache that is older than that is still used, but
+ * the task method is also run again in the background to replace it before it expires. Calls therefore keep being
+ * served from the cache, rather than waiting for the task method each time a result expires.
+ *
+ * @author Brendan McCarthy
+ * @see com.ebay.bascomtask.core.ResultCache
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface Cacheable {
+    /**
+     * How long a result remains usable after it is produced.
+     *
+     * @return milliseconds
+     */
+    long ttlMs();
+
+    /**
+     * Limit on the number of results held for this task method, beyond which the least recently used are evicted.
+     *
+     * @return maximum entries
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * Age after which a cached result is refreshed in the background when it is next used, or zero to never
+     * refresh ahead of expiry. Should be less than {@link #ttlMs()}.
+     *
+     * @return milliseconds
+     * @see com.ebay.bascomtask.core.ResultCache#setRefreshExecutorService(java.util.concurrent.ExecutorService)
+     */
+    long refreshAfterMs() default 0;
+}
@@ -0,0 +1,59 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method that should be called a second time, on a spawned thread, if its first call has not completed
+ * after a threshold. Whichever call first completes normally supplies the result and the other is ignored; an
+ * exception is only propagated if both calls fail. This trims the latency tail of task methods, such as calls to
+ * remote services, that are occasionally slow but usually succeed quickly when repeated. Only task methods that are
+ * safe to call twice with the same arguments should be marked.
+ *
+ * <p>The threshold is either fixed by {@link #afterMs()} or, by default, learned from the completion times of
+ * earlier calls to the same task-plus-method name in this JVM. In the latter case no second call is made until
+ * enough completion times have been observed.
+ *
+ * @author Brendan McCarthy
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface Hedged {
+    /**
+     * How long to wait before making the second call, or zero to learn that from observed completion times.
+     *
+     * @return milliseconds
+     */
+    long afterMs() default 0;
+
+    /**
+     * When {@link #afterMs()} is zero, the fraction of observed completion times that should not lead to a second
+     * call. The default waits until the 95th percentile.
+     *
+     * @return fraction between 0 and 1
+     */
+    double percentile() default 0.95;
+}
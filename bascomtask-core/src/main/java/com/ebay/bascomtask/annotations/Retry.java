@@ -0,0 +1,86 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method that should be called again when it fails, either by throwing an exception or by returning a
+ * CompletableFuture that completes exceptionally. Calls are separated by exponentially increasing delays, reduced
+ * by a random amount so that calls from many requests to a recovering backend are spread out. No thread is held
+ * during a delay; the next call is made on a spawned thread once the delay has passed.
+ *
+ * <p>The exception from the last call is propagated if all calls fail, or as soon as a call fails with an exception
+ * that is not retryable. A call is also not retried if the timeout of the activation it is part of would be exceeded
+ * before it could be made.
+ *
+ * @author Brendan McCarthy
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface Retry {
+    /**
+     * Maximum number of calls, including the first.
+     *
+     * @return number of calls
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * Delay before the second call, before jitter is applied.
+     *
+     * @return milliseconds
+     */
+    long delayMs() default 50;
+
+    /**
+     * Factor by which each delay exceeds the one before it.
+     *
+     * @return multiplier
+     */
+    double multiplier() default 2;
+
+    /**
+     * Upper limit on any delay, before jitter is applied.
+     *
+     * @return milliseconds
+     */
+    long maxDelayMs() default 1000;
+
+    /**
+     * Largest fraction by which any delay may be randomly reduced.
+     *
+     * @return fraction between 0 and 1
+     */
+    double jitter() default 0.5;
+
+    /**
+     * Exceptions for which a call is retried, including their subclasses. If empty, any Exception is retried.
+     * A {@link com.ebay.bascomtask.exceptions.TimeoutExceededException} is never retried.
+     *
+     * @return exception classes
+     */
+    Class<? extends Throwable>[] retryOn() default {};
+}
@@ -0,0 +1,48 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method that should always be spawned, using the ExecutorService registered under
+ * the given name rather than the default one. This keeps task methods with different costs, such as
+ * CPU-bound computations and slow remote calls, from blocking each other on a shared thread pool.
+ * If no ExecutorService is registered under that name, the default one is used.
+ *
+ * @author Brendan McCarthy
+ * @see com.ebay.bascomtask.core.CommonConfig#setExecutorService(String, java.util.concurrent.ExecutorService)
+ * @see com.ebay.bascomtask.core.TaskInterface#runOn(String)
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface RunOn {
+    /**
+     * Name of the ExecutorService to spawn on.
+     *
+     * @return name
+     */
+    String value();
+}
@@ -0,0 +1,47 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a task method whose concurrent calls with equal arguments, from any Orchestrators in the JVM, share a
+ * single execution. A call that is ready to run while another call on the same task class and method with equal
+ * argument values is still running does not run the task method itself, but completes with the same outcome,
+ * whether a result or an exception thrown by the task method. A failure that belongs to the call that started the
+ * execution, such as its timeout or its cancellation, is not shared; the waiting calls then start over as if
+ * arriving fresh. Calls made after that execution completes run the task method again. This
+ * keeps a burst of identical requests, as happens when a popular result expires upstream, from all reaching the
+ * same backend.
+ *
+ * <p>Arguments (and the values of any CompletableFuture arguments) must have meaningful equals() and hashCode()
+ * methods.
+ *
+ * @author Brendan McCarthy
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface SingleFlight {
+}
@@ -0,0 +1,48 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Limits how long a task method may take, measured from when it starts executing until the CompletableFuture it
+ * returns is complete. Once that time has passed, the CompletableFuture returned to the caller of the task method
+ * is completed with a {@link com.ebay.bascomtask.exceptions.TimeoutExceededException}, which propagates to any
+ * task methods that depend on it. Other task methods are not affected, and the task method itself is not
+ * interrupted. Activations made from inside the task method are limited to the time it has left.
+ *
+ * @author Brendan McCarthy
+ * @see com.ebay.bascomtask.core.TaskInterface#timeoutMs(long)
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+@Inherited
+public @interface Timeout {
+    /**
+     * Maximum duration in milliseconds.
+     *
+     * @return milliseconds
+     */
+    long value();
+}
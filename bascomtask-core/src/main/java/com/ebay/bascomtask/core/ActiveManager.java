@@ -19,6 +19,9 @@ package com.ebay.bascomtask.core;
 class ActiveManager {
     private static ThreadLocal<Orchestrator> configured = new ThreadLocal<>();
 
+    // Limits activations made by the task method running in the current thread
+    private static ThreadLocal<TimeBox> deadlines = new ThreadLocal<>();
+
     static Orchestrator current() {
         return configured.get();
     }
@@ -27,7 +30,40 @@ class ActiveManager {
         configured.set(orchestrator);
     }
 
-    static void clear() {
-        configured.remove();
+    /**
+     * Restores the orchestrator, possibly null, that was current before a nested {@link #set(Orchestrator)}. A
+     * thread running a task method can run another task method while it waits, and must not lose its own
+     * orchestrator when that other task method completes.
+     *
+     * @param previous value of {@link #current()} before the set call
+     */
+    static void restore(Orchestrator previous) {
+        if (previous == null) {
+            configured.remove();
+        } else {
+            configured.set(previous);
+        }
+    }
+
+    /**
+     * Returns the TimeBox that the task method running in the current thread must complete within.
+     *
+     * @return TimeBox or null if not inside a task method
+     */
+    static TimeBox deadline() {
+        return deadlines.get();
+    }
+
+    /**
+     * Sets or, if null, clears the value returned by {@link #deadline()}.
+     *
+     * @param timeBox to set
+     */
+    static void setDeadline(TimeBox timeBox) {
+        if (timeBox == null) {
+            deadlines.remove();
+        } else {
+            deadlines.set(timeBox);
+        }
     }
 }
@@ -19,6 +19,7 @@ package com.ebay.bascomtask.core;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -93,6 +94,7 @@ class BascomTaskFuture<T> extends CompletableFuture<T> {
     }
 
     private void finish(T t) {
+        binding.markCompleted();
         complete(t);
         List<Binding<?>> lbs;
         synchronized (listenerLock) {
@@ -125,6 +127,35 @@ class BascomTaskFuture<T> extends CompletableFuture<T> {
         return pending;
     }
 
+    /**
+     * Returns the largest critical path estimate among the activated bindings waiting on this CF.
+     *
+     * @param depth how many further levels of downstream tasks to include
+     * @return estimate in nanoseconds, 0 if there are no such bindings
+     */
+    long maxListenerCriticalPathNanos(int depth) {
+        long max = 0;
+        synchronized (listenerLock) {
+            if (listenerBindings != null) {
+                for (Binding<?> next : listenerBindings) {
+                    max = Math.max(max, next.estimateCriticalPathNanos(depth));
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the value of this CF once it is known to be complete, without the activation applied by the
+     * standard value-access methods.
+     *
+     * @return value
+     * @throws CompletionException if completed exceptionally
+     */
+    T getCompletedValue() {
+        return super.getNow(null);
+    }
+
     private static RuntimeException rethrow(ExecutionException e) {
         Throwable t = e.getCause();
         if (t instanceof RuntimeException) {
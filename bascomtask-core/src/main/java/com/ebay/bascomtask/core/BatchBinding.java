@@ -0,0 +1,120 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Binding for a single call to the batch method of a {@link com.ebay.bascomtask.annotations.Batchable} task method,
+ * in place of calls to that task method. Its results are distributed to the outputs of the replaced calls.
+ *
+ * @author Brendan McCarthy
+ */
+class BatchBinding extends Binding<List<Object>> {
+    private final List<ReflectionBinding<?, ?>> members;
+    private final ReflectionBinding<?, ?> first;
+
+    // One for each member, in the same order
+    private final List<CompletableFuture<Object>> results = new ArrayList<>();
+
+    BatchBinding(Engine engine, List<ReflectionBinding<?, ?>> members) {
+        super(engine);
+        this.members = members;
+        this.first = members.get(0);
+        for (ReflectionBinding<?, ?> next : members) {
+            CompletableFuture<Object> cf = new CompletableFuture<>();
+            results.add(cf);
+            next.bindResult(cf);
+        }
+    }
+
+    @Override
+    public boolean isLight() {
+        return first.isLight();
+    }
+
+    @Override
+    public boolean isRunSpawned() {
+        return first.isRunSpawned();
+    }
+
+    @Override
+    public String getExecutorName() {
+        return first.getExecutorName();
+    }
+
+    @Override
+    String doGetExecutionName() {
+        return first.getTaskName() + "." + first.getBatchMethod().getName();
+    }
+
+    @Override
+    public TaskInterface<?> getTask() {
+        return first.getTask();
+    }
+
+    private List<Object> getBatchArgument() {
+        List<Object> arg = new ArrayList<>(members.size());
+        for (ReflectionBinding<?, ?> next : members) {
+            arg.add(next.getArgs()[0]);
+        }
+        return arg;
+    }
+
+    @Override
+    protected Object invokeTaskMethod() {
+        Object rv = TaskMethod.of(first.getBatchMethod()).invoke(first.getUserTask(), new Object[]{getBatchArgument()});
+        if (rv instanceof CompletableFuture) {
+            // Exceptions are distributed through faultForward
+            ((CompletableFuture<?>) rv).thenAccept(this::distribute);
+        }
+        return rv;
+    }
+
+    private void distribute(Object rv) {
+        List<?> values = rv instanceof List ? (List<?>) rv : null;
+        if (values == null || values.size() != results.size()) {
+            String msg = "Batch method " + getName() + " returned " + (values == null ? rv : values.size() + " results")
+                    + " for " + results.size() + " calls";
+            InvalidTaskMethodException e = new InvalidTaskMethodException(msg);
+            for (CompletableFuture<Object> next : results) {
+                next.completeExceptionally(e);
+            }
+        } else {
+            for (int i = 0; i < values.size(); i++) {
+                results.get(i).complete(values.get(i));
+            }
+        }
+    }
+
+    @Override
+    void faultForward(Throwable t, List<FateTask> fates) {
+        super.faultForward(t, fates);
+        for (CompletableFuture<Object> next : results) {
+            next.completeExceptionally(t);
+        }
+    }
+
+    @Override
+    public void formatActualSignature(StringBuilder sb) {
+        Utils.formatFullSignature(sb, getTaskPlusMethodName(), new Object[]{getBatchArgument()});
+    }
+}
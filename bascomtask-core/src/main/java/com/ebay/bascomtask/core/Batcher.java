@@ -0,0 +1,150 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Batchable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects ready-to-run calls to {@link Batchable} task methods so that they can be combined into calls to their
+ * batch methods. Without a window, calls are collected per 'wave', i.e. those that become ready in a single thread
+ * during one pass of activation or completion processing, and the wave is flushed at the end of that pass. With a
+ * window, calls are collected across waves and threads until the window expires.
+ *
+ * @author Brendan McCarthy
+ */
+class Batcher {
+    private static final ThreadLocal<Map<Key, List<ReflectionBinding<?, ?>>>> wave = new ThreadLocal<>();
+    private static final ConcurrentMap<Key, List<ReflectionBinding<?, ?>>> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Calls can only be combined if on the same task object and method in the same Orchestrator.
+     */
+    private static class Key {
+        private final Engine engine;
+        private final Object userTask;
+        private final Method method;
+
+        Key(ReflectionBinding<?, ?> binding) {
+            this.engine = binding.engine;
+            this.userTask = binding.getUserTask();
+            this.method = binding.getMethod();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return engine == that.engine && userTask == that.userTask && method.equals(that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(userTask) + method.hashCode();
+        }
+    }
+
+    /**
+     * Holds a ready binding for later combination with others.
+     *
+     * @param binding to collect
+     */
+    static void collect(ReflectionBinding<?, ?> binding) {
+        Key key = new Key(binding);
+        long windowMs = binding.getBatchable().windowMs();
+        if (windowMs > 0) {
+            windows.compute(key, (k, members) -> {
+                if (members == null) {
+                    members = new ArrayList<>();
+                    SharedScheduler.schedule(() -> flushWindow(k), windowMs, TimeUnit.MILLISECONDS);
+                }
+                members.add(binding);
+                return members;
+            });
+        } else {
+            Map<Key, List<ReflectionBinding<?, ?>>> map = wave.get();
+            if (map == null) {
+                map = new LinkedHashMap<>();
+                wave.set(map);
+            }
+            map.computeIfAbsent(key, k -> new ArrayList<>()).add(binding);
+        }
+    }
+
+    /**
+     * Schedules the bindings collected in the current thread's wave, to be called at the end of each pass that
+     * may have collected any.
+     *
+     * @param pending possibly null Binding (task) that needs to be started
+     * @return ready and needing to-be-executed Binding (task) that needs to be started
+     */
+    static Binding<?> flushWave(Binding<?> pending) {
+        Map<Key, List<ReflectionBinding<?, ?>>> map = wave.get();
+        if (map != null) {
+            // Bindings that become ready while scheduling these belong to a new wave
+            wave.remove();
+            for (List<ReflectionBinding<?, ?>> members : map.values()) {
+                Binding<?> binding = combine(members);
+                if (binding != null) {
+                    pending = binding.schedule(pending, "batch");
+                }
+            }
+        }
+        return pending;
+    }
+
+    private static void flushWindow(Key key) {
+        List<ReflectionBinding<?, ?>> members = windows.remove(key);
+        if (members != null) {
+            Binding<?> binding = combine(members);
+            if (binding != null) {
+                // Spawned, since this is the scheduler thread
+                binding.fire("batchWindow", "spawn", false);
+            }
+        }
+    }
+
+    /**
+     * Returns a single binding to run for the supplied ones.
+     *
+     * @param members to combine
+     * @return binding or null if there is nothing left to run
+     */
+    private static Binding<?> combine(List<ReflectionBinding<?, ?>> members) {
+        // Any that have faulted, e.g. by having been cancelled while collected, are skipped
+        members.removeIf(next -> next.getOutput().isCompletedExceptionally());
+        switch (members.size()) {
+            case 0:
+                return null;
+            case 1:
+                return members.get(0);
+            default:
+                BatchBinding batchBinding = new BatchBinding(members.get(0).engine, members);
+                batchBinding.markActivated(members.get(0).getTimeBox());
+                return batchBinding;
+        }
+    }
+}
@@ -16,15 +16,21 @@
  **************************************************************************/
 package com.ebay.bascomtask.core;
 
+import com.ebay.bascomtask.annotations.Hedged;
+import com.ebay.bascomtask.annotations.Retry;
 import com.ebay.bascomtask.exceptions.InvalidTaskException;
 import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
 import com.ebay.bascomtask.exceptions.TaskNotStartedException;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -36,12 +42,19 @@ import java.util.concurrent.atomic.AtomicReference;
 abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
     private static final Logger LOG = LoggerFactory.getLogger(Binding.class);
 
+    // How many levels of downstream tasks are considered when estimating a critical path
+    private static final int CRITICAL_PATH_DEPTH = 4;
+
     final Engine engine;
 
     // Set (once and only once) to a TimeBox (as supplied by a user call) when this binding's task is scheduled
     // for execution, either immediately or once its arguments are ready
     private final AtomicReference<TimeBox> activated = new AtomicReference<>(null);
 
+    // Set when this binding's task method is started, only if it has a timeout of its own, to the TimeBox that
+    // applies to activations made from inside it
+    private TimeBox deadline = null;
+
     // Subset of args that are BascomTaskFutures
     private final List<BascomTaskFuture<?>> inputs = new ArrayList<>();
 
@@ -60,6 +73,7 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
     private String cachedTaskPlusName = null;
 
     private long startedAt;
+    private long startedAtNanos;
     private long endedAt;
     private long completedAt;
 
@@ -82,6 +96,7 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
      */
     Binding(Engine engine) {
         this.engine = engine;
+        engine.onCreate(this);
     }
 
     @Override
@@ -94,10 +109,38 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
         return false;
     }
 
+    @Override
     public boolean isRunSpawned() {
         return false;
     }
 
+    /**
+     * Returns the timeout for this task method alone, as opposed to the one for the activation it is part of.
+     *
+     * @return milliseconds, zero if none
+     */
+    long getTaskTimeoutMs() {
+        return 0;
+    }
+
+    /**
+     * Returns the settings for making a second call to this task method if the first is slow.
+     *
+     * @return settings, or null if only one call should ever be made
+     */
+    Hedged getHedged() {
+        return null;
+    }
+
+    /**
+     * Returns the settings for calling this task method again if a call fails.
+     *
+     * @return settings, or null if a failed call should not be retried
+     */
+    Retry getRetry() {
+        return null;
+    }
+
     /**
      * Ensures the provided CF is or is wrapped by a BT-controlled CF, and registered as an input argument.
      *
@@ -176,36 +219,111 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
         }
     }
 
+    /**
+     * Called when this binding is ready to run, to either start it or return it as pending.
+     *
+     * @param pending possibly null Binding (task) that needs to be started
+     * @param src     for logging
+     * @return ready and needing to-be-executed Binding (task) that needs to be started
+     */
     Binding<?> runAccordingToMode(Binding<?> pending, String src) {
-        SpawnMode mode = engine.getSpawnMode();
-        if (isLight()) {
-            fire(src, "light", true);
-        } else if (mode == SpawnMode.NEVER_MAIN && engine.isMainThread() && !isLight()) {
-            fire(src, "neverMain", false);
-        } else if (mode == SpawnMode.ALWAYS_SPAWN) {
-            fire(src, "alwaysSpawn", false);
-        } else if (mode == SpawnMode.NEVER_SPAWN) {
-            fire(src, "neverSpawn", true);
-        } else if (isRunSpawned()) {
-            fire(src, "runSpawned", false);
-        } else if (mode == SpawnMode.DONT_SPAWN_UNLESS_EXPLICIT) {
-            fire(src, "explicit", true);
-        } else { // May or may not spawn
-            if (pending != null) {
-                pending.fire(src, "conflict", false);
-            }
-            pending = this;
+        return schedule(pending, src);
+    }
+
+    /**
+     * Starts this binding or returns it as pending, according to the {@link SchedulingPolicy} in effect.
+     *
+     * @param pending possibly null Binding (task) that needs to be started
+     * @param src     for logging
+     * @return ready and needing to-be-executed Binding (task) that needs to be started
+     */
+    final Binding<?> schedule(Binding<?> pending, String src) {
+        SchedulingPolicy policy = engine.getEffectiveSchedulingPolicy();
+        switch (policy.decide(this, pending, engine, engine.isMainThread())) {
+            case INLINE:
+                fire(src, "inline", true);
+                break;
+            case SPAWN:
+                fire(src, "spawn", false);
+                break;
+            case DEFER:
+                if (pending != null) {
+                    pending.fire(src, "conflict", false);
+                }
+                pending = this;
+                break;
         }
         return pending;
     }
 
-    final void onCompletion(List<Binding<?>> bindings) {
+    /**
+     * Estimates how long it will take for this task method and the longest chain of activated task methods
+     * that depend on it to complete, based on durations observed in earlier executions.
+     *
+     * @return estimate in nanoseconds, 0 if nothing is known
+     */
+    long estimateCriticalPathNanos() {
+        return estimateCriticalPathNanos(CRITICAL_PATH_DEPTH);
+    }
+
+    /**
+     * Variant of {@link #estimateCriticalPathNanos()} with an explicit depth.
+     *
+     * @param depth how many levels of downstream tasks to include
+     * @return estimate in nanoseconds, 0 if nothing is known
+     */
+    long estimateCriticalPathNanos(int depth) {
+        long estimate = DurationStats.averageCompletionNanos(getName());
+        if (depth > 0) {
+            estimate += output.maxListenerCriticalPathNanos(depth - 1);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates how long it will take for this task method to complete if activated now, including the longest
+     * chain of task methods it depends on that have not already been activated, based on durations observed in
+     * earlier executions.
+     *
+     * @param estimates already made during this estimation, since a task method may be reached more than once
+     * @return estimate in nanoseconds, 0 if nothing is known
+     */
+    long estimateUpstreamNanos(Map<Binding<?>, Long> estimates) {
+        if (activated.get() != null || output.isDone()) {
+            return 0;  // Already underway, so not part of what a new activation adds
+        }
+        Long known = estimates.get(this);
+        if (known == null) {
+            long upstream = 0;
+            for (BascomTaskFuture<?> next : inputs) {
+                upstream = Math.max(upstream, next.getBinding().estimateUpstreamNanos(estimates));
+            }
+            known = DurationStats.averageCompletionNanos(getName()) + upstream;
+            estimates.put(this, known);
+        }
+        return known;
+    }
+
+    /**
+     * Records the completion time, before the output is completed so that it is visible to anyone seeing that
+     * completion.
+     */
+    final void markCompleted() {
         completedAt = System.currentTimeMillis();
+    }
+
+    final void onCompletion(List<Binding<?>> bindings) {
+        if (started && startedAtNanos != 0 && engine.isRecordingCompletions()) {
+            DurationStats.entry(getName()).completion.record(System.nanoTime() - startedAtNanos);
+        }
         activated.get().checkForInterruptsNeeded(this);
         Binding<?> pending = null;
         for (Binding<?> next : bindings) {
             pending = next.argReady(pending);
         }
+        if (engine.isBatching()) {
+            pending = Batcher.flushWave(pending);
+        }
         if (pending != null) {
             pending.fire("onCompletion", "direct", true);
         }
@@ -239,6 +357,31 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
         return output;
     }
 
+    TimeBox getTimeBox() {
+        return activated.get();
+    }
+
+    /**
+     * Activates this binding without scheduling it, for bindings that are scheduled directly.
+     *
+     * @param timeBox to apply
+     */
+    final void markActivated(TimeBox timeBox) {
+        activated.compareAndSet(null, timeBox);
+    }
+
+    /**
+     * Completes this binding from the supplied CompletableFuture rather than by firing it, as when its
+     * result is computed together with others.
+     *
+     * @param cf to take result from
+     */
+    @SuppressWarnings("unchecked")
+    final void bindResult(CompletableFuture<?> cf) {
+        started = true;
+        output.bind((CompletableFuture<RETURNTYPE>) cf);
+    }
+
     @Override
     public Object before(TaskRun taskRun) {
         return null;
@@ -263,27 +406,35 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
                 //} else {
                 started = true;
                 final Thread parentThread = Thread.currentThread();
-                List<TaskRunner> localRunners = this.engine.getRunners();
-                int sz = localRunners.size();
-                if (sz == 0) {
+                TaskRunner[] localRunners = this.engine.getRunners();
+                if (localRunners.length == 0) {
                     chooseThreadAndFire(this, this, parentThread, null, src1, src2, direct);
                 } else {
-                    fireTaskThruRunners(localRunners, sz - 1, parentThread, this, src1, src2, direct);
+                    RunnerChain chain = new RunnerChain(localRunners, parentThread, this);
+                    chooseThreadAndFire(chain.getFirstRunner(), chain, parentThread, chain.getFirstFromBefore(), src1, src2, direct);
                 }
             }
         }
     }
 
-    private void fireTaskThruRunners(List<TaskRunner> runners, int index, Thread parentThread, TaskRun under, String src1, String src2, boolean direct) {
-        TaskRunner next = runners.get(index);
-        if (index == 0) {
-            Object fromBefore = next.before(under);
-            chooseThreadAndFire(next, under, parentThread, fromBefore, src1, src2, direct);
-        } else {
-            PlaceHolderRunner phr = new PlaceHolderRunner(next, parentThread, under);
-            fireTaskThruRunners(runners, index - 1, parentThread, phr, src1, src2, direct);
-
+    /**
+     * Calls this binding's task method again, passing through the TaskRunners just as the first call did, for
+     * calls beyond the first that are made by a hedge or a retry.
+     *
+     * @param parentThread thread that arranged for this call
+     * @return value returned through the TaskRunners
+     */
+    final Object runAgain(Thread parentThread) {
+        TaskRunner[] localRunners = engine.getRunners();
+        if (localRunners.length == 0) {
+            return run();
         }
+        RunnerChain chain = new RunnerChain(localRunners, parentThread, this);
+        TaskRunner taskRunner = chain.getFirstRunner();
+        Object fromBefore = chain.getFirstFromBefore();
+        Object rv = taskRunner.executeTaskMethod(chain, parentThread, fromBefore);
+        completeRunner(taskRunner, chain, fromBefore, rv);
+        return rv;
     }
 
     private void chooseThreadAndFire(TaskRunner taskRunner, TaskRun taskRun, Thread parentThread, Object fromBefore, String src1, String src2, boolean direct) {
@@ -291,14 +442,37 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
             fireFirstRunner(taskRunner, taskRun, parentThread, fromBefore, src1, src2);
         } else {
             Runnable runnable = () -> fireFirstRunner(taskRunner, taskRun, parentThread, fromBefore, src1, src2);
-            engine.run(runnable, parentThread, activated.get());
+            engine.run(runnable, parentThread, activated.get(), getExecutorName());
         }
     }
 
     private void fireFirstRunner(TaskRunner taskRunner, TaskRun taskRun, Thread parentThread, Object fromBefore, String src1, String src2) {
         final String name = getName();
         startedAt = System.currentTimeMillis(); // Set here so runners can access it
+        startedAtNanos = System.nanoTime();
         LOG.debug("Firing {} from {}-{}", name, src1, src2);
+        long taskTimeoutMs = getTaskTimeoutMs();
+        if (taskTimeoutMs > 0) {
+            deadline = TimeBox.within(taskTimeoutMs, activated.get());
+            startTaskTimeout(taskTimeoutMs);
+        }
+        Retry retry = getRetry();
+        RetryingExecution<RETURNTYPE> retrying = null;
+        if (retry != null) {
+            retrying = new RetryingExecution<>(this, retry);
+            output.bind(retrying.getResult());
+        }
+        Hedged hedged = getHedged();
+        HedgedExecution<RETURNTYPE> hedge = null;
+        if (hedged != null) {
+            hedge = new HedgedExecution<>(this, hedged);
+            if (retrying == null) {
+                output.bind(hedge.getResult());
+            } else {
+                // Only retry once neither the first call nor its hedge has succeeded
+                retrying.follow(hedge.getResult());
+            }
+        }
         try {
             Object rv = taskRunner.executeTaskMethod(taskRun, parentThread, fromBefore);
             if (rv instanceof CompletableFuture) {
@@ -307,7 +481,13 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
                 // Allow taskRunners to complete before we continue processing other tasks here
                 completeRunner(taskRunner, taskRun, fromBefore, cf);
                 LOG.debug("Exiting {} from {}-{}", name, src1, src2);
-                output.bind(cf);
+                if (hedge != null) {
+                    hedge.first(cf);
+                } else if (retrying != null) {
+                    retrying.follow(cf);
+                } else {
+                    output.bind(cf);
+                }
             } else if (rv == null) {
                 throw new InvalidTaskMethodException("Null return values are not supported in BascomTask, return complete(null) instead");
             } else {
@@ -315,17 +495,58 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
             }
         } catch (Throwable e) {
             LOG.debug("Exception-exit {} from {}-{}: {}", name, src1, src2, e.getMessage());
-            faultForward(e);
+            if (hedge != null) {
+                hedge.fail(e);
+            } else if (retrying != null) {
+                retrying.fail(e);
+            } else {
+                faultForward(e);
+            }
         }
     }
 
+    /**
+     * Arranges for this binding's output to be completed with a TimeoutExceededException unless it completes
+     * otherwise within the given time. The task method itself is left to run.
+     *
+     * @param timeoutMs to wait
+     */
+    private void startTaskTimeout(long timeoutMs) {
+        ScheduledFuture<?> timer = SharedScheduler.schedule(() -> {
+            if (!output.isDone()) {
+                String msg = "Timeout " + timeoutMs + " exceeded by " + getTaskPlusMethodName();
+                LOG.debug("Faulting {}", msg);
+                TimeoutExceededException e = new TimeoutExceededException(msg);
+                List<FateTask> fates = new ArrayList<>();
+                // Faulted directly rather than spawned, so that maxConcurrency cannot hold the fault back
+                // behind the very work it is timing out
+                faultForward(e, fates);
+                if (fates.size() > 0) {
+                    // Spawned, since this is the scheduler thread
+                    engine.run(() -> runFates(e, fates), Thread.currentThread(), TimeBox.NO_TIMEOUT, null);
+                }
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        output.whenComplete((v, t) -> timer.cancel(false));
+    }
+
     final void faultForward(Throwable t) {
         List<FateTask> fates = new ArrayList<>();
 
         // First propagate the exception to all direct & indirect descendents, excluding FateTasks
         // which we collect in a list for later
         faultForward(t, fates);
+        runFates(t, fates);
+    }
 
+    /**
+     * Cancels the not-yet-started inputs of FateTasks collected by {@link #faultForward(Throwable, List)}, then
+     * runs those FateTasks.
+     *
+     * @param t     that was propagated
+     * @param fates collected
+     */
+    private void runFates(Throwable t, List<FateTask> fates) {
         // Next propagate TaskNotStartedException to all reachable task nodes reachable from all fate inputs
         // and not yet started
         TaskNotStartedException tns = new TaskNotStartedException(t);
@@ -340,6 +561,9 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
         for (FateTask next : fates) {
             pending = next.runAccordingToMode(pending, "faultForward");
         }
+        if (engine.isBatching()) {
+            pending = Batcher.flushWave(pending);
+        }
         if (pending != null) {
             pending.fire("faultForward", "fate", true);
         }
@@ -389,16 +613,38 @@ abstract class Binding<RETURNTYPE> implements TaskRunner, TaskRun {
 
     protected abstract Object invokeTaskMethod();
 
+    /**
+     * Returns the TimeBox that activations made from inside this task method must end within.
+     *
+     * @return this task method's own deadline if it has a timeout, else the activated TimeBox if that has a
+     * timeout, else null
+     */
+    private TimeBox getDeadline() {
+        if (deadline != null) {
+            return deadline;
+        }
+        TimeBox timeBox = activated.get();
+        return timeBox.timeBudget > 0 ? timeBox : null;
+    }
+
     @Override
     public final Object run() {
+        Orchestrator previous = ActiveManager.current();
+        TimeBox previousDeadline = ActiveManager.deadline();
+        long startNanos = engine.getAdaptiveLightNanos() > 0 ? System.nanoTime() : 0;
         try {
             // Avoid actually invoking the task method if a timeout has been exceeded, always.
             activated.get().checkIfTimeoutExceeded(this);
             ActiveManager.set(engine);
+            ActiveManager.setDeadline(getDeadline());
             return invokeTaskMethod();
         } finally {
             endedAt = System.currentTimeMillis();
-            ActiveManager.clear();
+            if (startNanos != 0) {
+                DurationStats.entry(getName()).execution.record(System.nanoTime() - startNanos);
+            }
+            ActiveManager.restore(previous);
+            ActiveManager.setDeadline(previousDeadline);
         }
     }
 
@@ -52,6 +52,25 @@ public interface CommonConfig {
      */
     void setSpawnMode(SpawnMode mode);
 
+    /**
+     * Gets the most recently set scheduling policy. The default is null, meaning that the current
+     * {@link #getSpawnMode()} serves as the policy.
+     *
+     * @return most recently-set policy, possibly null
+     */
+    SchedulingPolicy getSchedulingPolicy();
+
+    /**
+     * Replaces the logic that decides whether each task method is run in the current thread or spawned. The current
+     * {@link SpawnMode} still determines whether waiting threads can be reused for spawned task methods. Setting
+     * null reverts to using the SpawnMode as the policy. While a policy is set, task method completion times are
+     * recorded as they are for {@link SpawnMode#CRITICAL_PATH}, so a policy that delegates to that mode for some
+     * decisions has the durations it relies on.
+     *
+     * @param policy to set, or null
+     */
+    void setSchedulingPolicy(SchedulingPolicy policy);
+
     /**
      * Gets the current timeout. The default is zero, meaning no timeout is in effect.
      *
@@ -91,6 +110,103 @@ public interface CommonConfig {
      */
     void setTimeoutStrategy(TimeoutStrategy strategy);
 
+    /**
+     * Gets the threshold below which task methods are treated as light based on their observed execution times.
+     * The default is zero, meaning this adaptive behavior is disabled.
+     *
+     * @return threshold in nanoseconds
+     */
+    long getAdaptiveLightNanos();
+
+    /**
+     * Enables task methods to be treated as light, i.e. not spawned, when their observed execution time is below
+     * the given threshold, without requiring a {@link com.ebay.bascomtask.annotations.Light} annotation or
+     * {@link TaskInterface#light()} call. Execution time is the time a task method spends before returning its
+     * CompletableFuture, during which it occupies its thread. It is tracked for each task name and method across
+     * all Orchestrators, as a moving average that must be based on several executions before a task method is
+     * considered light, and that stops it being considered light if it rises again above the threshold. Task
+     * methods explicitly requested to be spawned, for example with {@link TaskInterface#runSpawned()}, are never
+     * made light.
+     *
+     * @param nanos threshold in nanoseconds, zero disables adaptive lightness
+     */
+    void setAdaptiveLightNanos(long nanos);
+
+    /**
+     * Calls {@link #setAdaptiveLightNanos(long)} after calculating the nanosecond duration from the supplied
+     * arguments.
+     *
+     * @param duration threshold
+     * @param timeUnit to apply
+     */
+    default void setAdaptiveLight(long duration, TimeUnit timeUnit) {
+        setAdaptiveLightNanos(timeUnit.toNanos(duration));
+    }
+
+    /**
+     * Gets the limit on spawned tasks running at once. The default is zero, meaning there is no limit.
+     *
+     * @return current limit
+     */
+    int getMaxConcurrency();
+
+    /**
+     * Limits how many spawned tasks of an Orchestrator can occupy threads from its ExecutorService at once.
+     * Tasks spawned beyond that limit are queued within the Orchestrator rather than passed to the ExecutorService,
+     * and are started as earlier ones finish or, where the {@link SpawnMode} allows waiting threads to be reused,
+     * by threads of that Orchestrator that are waiting on a CompletableFuture. This keeps a single wide Orchestrator
+     * from flooding an ExecutorService that is shared with others. Tasks run in the calling thread, as determined by
+     * the SpawnMode or {@link SchedulingPolicy}, are not limited.
+     *
+     * @param max limit, zero means no limit
+     */
+    void setMaxConcurrency(int max);
+
+    /**
+     * Indicates whether activations may be rejected when predicted to exceed their timeout. The default is false.
+     *
+     * @return true iff admission control is enabled
+     */
+    boolean isAdmissionControl();
+
+    /**
+     * Enables rejection of activations that have a timeout, when the time they are predicted to take exceeds what
+     * is left of that timeout. A rejected activation starts no tasks, and throws an
+     * {@link com.ebay.bascomtask.exceptions.AdmissionRejectedException} from the activate call. This fails fast
+     * during load spikes, rather than queueing work that would time out anyway.
+     *
+     * <p>The prediction adds two parts. The first is the longest chain of task methods being activated, based on
+     * the average completion time of each observed in earlier executions, in any Orchestrator with admission control
+     * enabled. Task methods with no observed executions count as zero, so activations are only rejected once there
+     * is history to go on. The second is how long spawned tasks would wait for a thread: the tasks queued on the
+     * ExecutorService, where it exposes that (as ThreadPoolExecutor and ForkJoinPool do), together with tasks held
+     * back by {@link #setMaxConcurrency(int)} because its limit of tasks in flight has been reached, spread over the
+     * threads available to run them and multiplied by the average time spawned tasks occupy a thread.
+     *
+     * @param admissionControl true to reject activations predicted to exceed their timeout
+     */
+    void setAdmissionControl(boolean admissionControl);
+
+    /**
+     * Indicates whether duplicate task method invocations share a result. The default is false.
+     *
+     * @return true iff memoizing
+     */
+    boolean isMemoizing();
+
+    /**
+     * Enables an Orchestrator to return the same CompletableFuture for repeated calls to the same task method with
+     * equal arguments, so that the task method is only executed once. Task objects are compared with equals(),
+     * so the calls can be on the same task object or on equal ones. CompletableFuture arguments are only equal if
+     * they are the same instance. Calls only match when they also have the same wiring settings, such as
+     * {@link TaskInterface#light()}, {@link TaskInterface#runSpawned()}, {@link TaskInterface#runOn(String)} and
+     * {@link TaskInterface#timeoutMs(long)}, since those change how the task method executes. Results are held for the life of the Orchestrator, so this is suited to Orchestrators that are created
+     * for a single request.
+     *
+     * @param memoizing true to share results
+     */
+    void setMemoizing(boolean memoizing);
+
     ExecutorService getExecutorService();
 
     /**
@@ -103,6 +219,25 @@ public interface CommonConfig {
 
     void restoreDefaultExecutorService();
 
+    /**
+     * Gets the ExecutorService registered under the given name.
+     *
+     * @param name to look up
+     * @return ExecutorService or null if none registered under that name
+     */
+    ExecutorService getExecutorService(String name);
+
+    /**
+     * Registers an ExecutorService under a name, for use by task methods that are marked with
+     * {@link com.ebay.bascomtask.annotations.RunOn} or wired with {@link TaskInterface#runOn(String)}. Such task
+     * methods are always run on that ExecutorService, and are not subject to {@link #setMaxConcurrency(int)} since
+     * the ExecutorService itself bounds them.
+     *
+     * @param name            to register under
+     * @param executorService to register, or null to remove any existing registration
+     */
+    void setExecutorService(String name, ExecutorService executorService);
+
     /**
      * Adds a TaskRunner that will be processed before any existing TaskRunner.
      *
@@ -0,0 +1,156 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * JVM-wide record of observed task method durations, keyed by task-plus-method name. Two durations are tracked:
+ * completion time, from when a task method starts until its CompletableFuture completes, and execution time,
+ * during which the task method occupies its thread. Each is kept as an exponentially-weighted moving average so
+ * that recent executions count for more than older ones. Updates are lock-free, so recording from many threads at
+ * once is cheap.
+ *
+ * @author Brendan McCarthy
+ */
+class DurationStats {
+    // Each new sample moves the average 1/(2^WEIGHT_SHIFT) of the way toward that sample
+    private static final int WEIGHT_SHIFT = 3;
+
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Only kept for task methods that need percentiles, since each is much larger than an Entry
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    // How long spawned tasks occupy a pool thread, across all task methods, for estimating how long queued ones wait
+    private static volatile Average spawned = new Average();
+
+    static class Average {
+        // Average in nanoseconds, or -1 if nothing has been recorded yet
+        private final AtomicLong average = new AtomicLong(-1);
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long nanos) {
+            long current;
+            long next;
+            do {
+                current = average.get();
+                next = current < 0 ? nanos : current + ((nanos - current) >> WEIGHT_SHIFT);
+            } while (!average.compareAndSet(current, next));
+            count.incrementAndGet();
+        }
+
+        long getAverageNanos() {
+            return Math.max(0, average.get());
+        }
+
+        long getCount() {
+            return count.get();
+        }
+    }
+
+    /**
+     * Counts of durations in buckets of exponentially increasing width, from which percentiles can be estimated.
+     * Unlike {@link Average}, all samples count equally regardless of age.
+     */
+    static class Histogram {
+        // Bucket i holds durations from 2^(i/BUCKETS_PER_DOUBLING) nanoseconds, so each is about 19% wider than
+        // the one before it
+        private static final int BUCKETS_PER_DOUBLING = 4;
+
+        // Enough to reach 2^40 nanoseconds, about 18 minutes; longer durations go in the last bucket
+        private static final int BUCKETS = 40 * BUCKETS_PER_DOUBLING;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long nanos) {
+            int bucket = nanos <= 1 ? 0 : (int) (Math.log(nanos) / Math.log(2) * BUCKETS_PER_DOUBLING);
+            counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            count.incrementAndGet();
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Estimates the duration that the given fraction of recorded durations do not exceed.
+         *
+         * @param fraction between 0 and 1, e.g. 0.95 for the 95th percentile
+         * @return upper bound, in nanoseconds, of the bucket holding that percentile, or 0 if nothing is recorded
+         */
+        long getPercentileNanos(double fraction) {
+            long target = (long) Math.ceil(fraction * count.get());
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen > 0 && seen >= target) {
+                    return (long) Math.pow(2, (i + 1) / (double) BUCKETS_PER_DOUBLING);
+                }
+            }
+            return 0;
+        }
+    }
+
+    static class Entry {
+        final Average completion = new Average();
+        final Average execution = new Average();
+    }
+
+    static Entry entry(String key) {
+        return entries.computeIfAbsent(key, k -> new Entry());
+    }
+
+    /**
+     * Returns the entry for the given key without creating it.
+     *
+     * @param key task-plus-method name
+     * @return entry, or null if nothing has been recorded
+     */
+    static Entry find(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the average observed completion time for the given key.
+     *
+     * @param key task-plus-method name
+     * @return average in nanoseconds, or 0 if nothing has been recorded
+     */
+    static long averageCompletionNanos(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : entry.completion.getAverageNanos();
+    }
+
+    static Histogram histogram(String key) {
+        return histograms.computeIfAbsent(key, k -> new Histogram());
+    }
+
+    static Average spawned() {
+        return spawned;
+    }
+
+    static void clear() {
+        entries.clear();
+        histograms.clear();
+        spawned = new Average();
+    }
+}
@@ -16,6 +16,7 @@
  **************************************************************************/
 package com.ebay.bascomtask.core;
 
+import com.ebay.bascomtask.exceptions.AdmissionRejectedException;
 import com.ebay.bascomtask.exceptions.InvalidTaskException;
 import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
 import com.ebay.bascomtask.exceptions.TimeoutExceededException;
@@ -25,7 +26,10 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.*;
 import java.util.stream.Collectors;
 
@@ -43,10 +47,22 @@ public class Engine implements Orchestrator {
     private long timeoutMs = 0;
     private TimeoutStrategy timeoutStrategy;
     private ExecutorService executorService;
+    private final Map<String, ExecutorService> namedExecutorServices = new ConcurrentHashMap<>();
     private SpawnMode spawnMode;
+    private SchedulingPolicy schedulingPolicy;
+    private int maxConcurrency = 0;
+    private boolean admissionControl = false;
+    private boolean memoizing = false;
+    private long adaptiveLightNanos = 0;
 
-    private final LinkedList<TaskRunner> runners = new LinkedList<>();
-    private final List<TaskRunner> exposeRunners = Collections.unmodifiableList(runners);
+    // Set once any Batchable task method is wired, after which waves of ready tasks must be checked for batching
+    private volatile boolean batching = false;
+
+    private static final TaskRunner[] NO_RUNNERS = new TaskRunner[0];
+
+    // Replaced rather than modified, so that each task method execution reads a consistent snapshot without locking
+    private volatile TaskRunner[] runners = NO_RUNNERS;
+    private final Object runnersLock = new Object();
 
     // For generating unique thread names for framework-managed threads
     private static final AtomicInteger engineCounter = new AtomicInteger(0);
@@ -56,16 +72,135 @@ public class Engine implements Orchestrator {
     // BT-managed threads are flagged for bookkeeping purposes
     private final ThreadLocal<Boolean> isBtManagedThread = ThreadLocal.withInitial(() -> false);
 
-    // For passing work (i.e. running tasks) back to the main thread
-    private final BlockingQueue<BlockingQueue<CrossThreadChannel>> idleThreads = new LinkedBlockingDeque<>();
+    // Threads waiting for a CompletableFuture to complete, available in the meantime for running spawned tasks
+    private final Queue<IdleListing> idleThreads = new ConcurrentLinkedQueue<>();
 
-    static class CrossThreadChannel {
-        final Thread parentThread;
+    // Number of recorded executions needed before a task method can be considered adaptively light
+    static final int ADAPTIVE_LIGHT_MIN_SAMPLES = 5;
+
+    // Task method results shared among equivalent invocations, only populated when memoizing
+    private final Map<InvocationKey, BascomTaskFuture<?>> memo = new ConcurrentHashMap<>();
+
+    // Spawned tasks currently occupying a thread from executorService, only tracked when maxConcurrency is set
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    // Non-null only while this engine records the task method calls of a GraphTemplate definition
+    private List<Binding<?>> recorded = null;
+
+    // Spawned tasks held back because maxConcurrency was reached
+    private final Deque<DeferredSpawn> deferredSpawns = new ConcurrentLinkedDeque<>();
+
+    // Approximate size of deferredSpawns, whose own size() traverses the whole deque
+    private final AtomicInteger deferredSpawnCount = new AtomicInteger(0);
+
+    /**
+     * Arguments to {@link #run(Runnable, Thread, TimeBox, String)} saved for when a spawn is no longer limited by
+     * maxConcurrency.
+     */
+    private static class DeferredSpawn {
         final Runnable runnable;
+        final Thread parentThread;
+        final TimeBox timeBox;
 
-        CrossThreadChannel(Thread parentThread, Runnable runnable) {
-            this.parentThread = parentThread;
+        DeferredSpawn(Runnable runnable, Thread parentThread, TimeBox timeBox) {
             this.runnable = runnable;
+            this.parentThread = parentThread;
+            this.timeBox = timeBox;
+        }
+    }
+
+    // Fills the slot of an IdleWaiter whose CompletableFuture has completed, so that it accepts no more work
+    private static final Runnable COMPLETED = () -> {
+    };
+
+    /**
+     * A thread waiting in {@link #waitUntilComplete(long, CompletableFuture)}. Work is passed to it without locking
+     * by filling its single slot, either with a runnable from {@link #run(Runnable, Thread, TimeBox, String)} or with the
+     * COMPLETED marker when the awaited CompletableFuture completes, and then unparking it. Serves directly as that
+     * completion callback, and blocks in a way that allows a {@link ForkJoinPool} (if that is the thread source)
+     * to compensate for the blocked thread rather than running short of workers.
+     */
+    static class IdleWaiter implements ForkJoinPool.ManagedBlocker, BiConsumer<Object, Throwable> {
+        final Thread thread = Thread.currentThread();
+
+        // Work to run, the COMPLETED marker, or null if empty
+        private final AtomicReference<Runnable> slot = new AtomicReference<>();
+
+        /**
+         * Passes work to the waiting thread.
+         *
+         * @param runnable to run
+         * @return true iff accepted, which only happens if the slot is empty
+         */
+        boolean offer(Runnable runnable) {
+            if (slot.compareAndSet(null, runnable)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void accept(Object msg, Throwable ex) {
+            offer(COMPLETED);
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (slot.get() == null) {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return slot.get() != null;
+        }
+
+        /**
+         * Waits for a runnable to execute or the COMPLETED marker, and empties the slot (except for the latter)
+         * so that the next runnable can be accepted. Only the waiting thread calls this.
+         *
+         * @return runnable or COMPLETED marker
+         * @throws InterruptedException if interrupted
+         */
+        Runnable take() throws InterruptedException {
+            ForkJoinPool.managedBlock(this);
+            Runnable runnable = slot.get();
+            if (runnable != COMPLETED) {
+                slot.set(null);  // No conflict since no other thread changes a non-empty slot
+            }
+            return runnable;
+        }
+
+        /**
+         * Prevents further work from being accepted, running any work that was accepted but not yet taken.
+         */
+        void close() {
+            Runnable runnable = slot.getAndSet(COMPLETED);
+            if (runnable != null && runnable != COMPLETED) {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * The entry for an IdleWaiter in the idleThreads queue of one orchestrator. A waiter has one for its own
+     * orchestrator and one for an enclosing orchestrator, if any, and republishes them each time it finishes running
+     * work. The flag keeps each listed at most once without having to search the queue for it.
+     */
+    static class IdleListing {
+        final IdleWaiter waiter;
+
+        // True from when this is offered to a queue until it is polled from it
+        final AtomicBoolean listed = new AtomicBoolean(false);
+
+        IdleListing(IdleWaiter waiter) {
+            this.waiter = waiter;
         }
     }
 
@@ -78,6 +213,18 @@ public class Engine implements Orchestrator {
         LaneRunner.apply(this);
     }
 
+    /**
+     * Creates an engine for use by the framework itself. It takes the global settings and TaskRunners, but neither
+     * initializers nor LaneRunners are applied, since those are meant for Orchestrators created by user code.
+     *
+     * @param name of engine
+     */
+    Engine(String name) {
+        this.name = name;
+        this.uniqueIndex = engineCounter.incrementAndGet();
+        GlobalOrchestratorConfig.getConfig().updateSettingsOn(this);
+    }
+
     @Override
     public String getName() {
         return name;
@@ -121,6 +268,138 @@ public class Engine implements Orchestrator {
         this.spawnMode = mode == null ? SpawnMode.WHEN_NEEDED : mode;
     }
 
+    @Override
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    @Override
+    public void setSchedulingPolicy(SchedulingPolicy policy) {
+        this.schedulingPolicy = policy;
+    }
+
+    @Override
+    public long getAdaptiveLightNanos() {
+        return adaptiveLightNanos;
+    }
+
+    @Override
+    public void setAdaptiveLightNanos(long nanos) {
+        this.adaptiveLightNanos = nanos;
+    }
+
+    /**
+     * Determines whether a task method should be treated as light because of its observed execution times.
+     *
+     * @param key task-plus-method name
+     * @return true iff adaptive lightness is enabled and applies
+     */
+    boolean isAdaptivelyLight(String key) {
+        long threshold = adaptiveLightNanos;
+        if (threshold > 0) {
+            DurationStats.Entry entry = DurationStats.find(key);
+            return entry != null
+                    && entry.execution.getCount() >= ADAPTIVE_LIGHT_MIN_SAMPLES
+                    && entry.execution.getAverageNanos() < threshold;
+        }
+        return false;
+    }
+
+    void enableBatching() {
+        batching = true;
+    }
+
+    boolean isBatching() {
+        return batching;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void setMaxConcurrency(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("maxConcurrency must not be negative: " + max);
+        }
+        this.maxConcurrency = max;
+        startDeferredSpawns();  // In case the limit was raised or removed
+    }
+
+    @Override
+    public boolean isAdmissionControl() {
+        return admissionControl;
+    }
+
+    @Override
+    public void setAdmissionControl(boolean admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public boolean isMemoizing() {
+        return memoizing;
+    }
+
+    @Override
+    public void setMemoizing(boolean memoizing) {
+        this.memoizing = memoizing;
+    }
+
+    /**
+     * Returns the output of an earlier equivalent invocation if there is one, else creates it.
+     *
+     * @param key      identifying the invocation
+     * @param createFn to create a new binding if needed
+     * @return output of shared binding
+     */
+    BascomTaskFuture<?> memoize(InvocationKey key, Supplier<Binding<?>> createFn) {
+        return memo.computeIfAbsent(key, k -> createFn.get().getOutput());
+    }
+
+    /**
+     * Makes this engine keep every task created in it, in creation order, and refuse all activation. Used to
+     * define a {@link GraphTemplate}, for which the definition function is run in a single thread.
+     */
+    void startRecording() {
+        recorded = new ArrayList<>();
+    }
+
+    boolean isRecording() {
+        return recorded != null;
+    }
+
+    List<Binding<?>> getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Called for each task created in this engine.
+     *
+     * @param binding just created
+     */
+    void onCreate(Binding<?> binding) {
+        if (recorded != null) {
+            recorded.add(binding);
+        }
+    }
+
+    SchedulingPolicy getEffectiveSchedulingPolicy() {
+        return schedulingPolicy == null ? spawnMode : schedulingPolicy;
+    }
+
+    /**
+     * Returns true if task method completion times should be recorded in {@link DurationStats}, which is the case
+     * whenever something might consult them: a custom scheduling policy, {@link SpawnMode#CRITICAL_PATH}, or
+     * admission control.
+     *
+     * @return true iff completion times are recorded
+     */
+    boolean isRecordingCompletions() {
+        return schedulingPolicy != null || spawnMode == SpawnMode.CRITICAL_PATH || admissionControl;
+    }
+
     @Override
     public long getTimeoutMs() {
         return timeoutMs;
@@ -174,88 +453,316 @@ public class Engine implements Orchestrator {
         waitUntilComplete(timeoutMs, cf);
     }
 
+    /**
+     * Indicates whether the current thread can be handed spawned tasks while it waits on a CompletableFuture,
+     * according to whether or not it is a thread spawned by this orchestrator.
+     *
+     * @return true iff the current thread should make itself available for work
+     */
+    private boolean isWaitingThreadReusable() {
+        SpawnMode mode = getSpawnMode();
+        return isMainThread() ? mode.isMainThreadReusable() : mode.isSpawnedThreadReusable();
+    }
+
+    /**
+     * Returns the orchestrator of the task method running in the current thread, if it differs from this one and
+     * the current thread may be reused for it. This is what makes a thread blocked inside a task method on a
+     * nested orchestration available to the orchestrator that started that task method.
+     *
+     * @return enclosing orchestrator or null if none or not reusable
+     */
+    private Engine getReusableEnclosingEngine() {
+        Orchestrator current = ActiveManager.current();
+        if (current instanceof Engine && current != this) {
+            Engine enclosing = (Engine) current;
+            if (enclosing.isWaitingThreadReusable()) {
+                return enclosing;
+            }
+        }
+        return null;
+    }
+
     /**
      * Called before returning a CompletableFuture value to user code, in {@link BascomTaskFuture#get()} for example.
      * If that CompletableFuture is !isDone() we make the calling thread available for work (i.e. running spawned
      * tasks) in the meantime since that thread would block on the the read call while we otherwise would have to
-     * pull a new task from the thread pool.
+     * pull a new task from the thread pool. This applies to threads spawned by this or an enclosing orchestrator,
+     * as well as to the main thread, each according to the SpawnMode in effect.
      *
-     * @param timeoutMs here prevents main-thread reuse if is not zero (meaning no timeout is in effect)
+     * @param timeoutMs here prevents thread reuse if is not zero (meaning no timeout is in effect)
      * @param cf        to start are watch for completion
      */
     private void waitUntilComplete(long timeoutMs, CompletableFuture<?> cf) {
-        if (getSpawnMode().isMainThreadReusable() && timeoutMs == 0) {
-            if (!cf.isDone()) {  // Redundant with later checks, but done here to avoid bookkeeping overhead for common cases
-                BlockingQueue<CrossThreadChannel> waiting = new LinkedBlockingDeque<>(1);
-                cf.whenComplete((msg, ex) -> {
-                    // Prevents run() method from taking it (it's ok if it's already taken it)
-                    if (!idleThreads.remove(waiting)) {
-                        // This is ok, just log for information purposes
-                        LOG.debug("Main thread preempted remove on {}", cf);
-                    }
-                    // Complete a waiting thread if there is one and run() method hasn't already processed it
-                    if (!waiting.offer(new CrossThreadChannel(null, null))) {
-                        // This is ok, just log for information purposes
-                        LOG.debug("Main thread preempted offer on {}", cf);
-                    }
-                });
-
-                while (!cf.isDone()) {
-                    if (idleThreads.offer(waiting)) {  // Publish the availability of this thread
-                        CrossThreadChannel channel;
-                        try {
-                            LOG.debug("Main thread waiting on {}", cf);
-                            channel = waiting.take();  // Waits for either a work task (runnable) or a termination marker
-                        } catch (InterruptedException e) {
-                            break;
+        if (timeoutMs == 0 && !cf.isDone()) {  // Redundant with later checks, but done here to avoid bookkeeping overhead for common cases
+            Engine enclosing = getReusableEnclosingEngine();
+            boolean reusable = isWaitingThreadReusable();
+            if (reusable || enclosing != null) {
+                IdleWaiter waiter = new IdleWaiter();
+                IdleListing listing = reusable ? new IdleListing(waiter) : null;
+                IdleListing enclosingListing = enclosing == null ? null : new IdleListing(waiter);
+                cf.whenComplete(waiter);
+                try {
+                    while (!cf.isDone()) {
+                        // Publish the availability of this thread, once only in each queue
+                        if (listing != null) {
+                            publish(listing);
                         }
-                        if (channel.runnable == null) {
+                        if (enclosingListing != null) {
+                            enclosing.publish(enclosingListing);
+                        }
+                        // Work held back by maxConcurrency would otherwise not be offered to this thread
+                        if (reusable) {
+                            offerDeferredSpawn(waiter);
+                        }
+                        if (enclosing != null) {
+                            enclosing.offerDeferredSpawn(waiter);
+                        }
+                        LOG.debug("Thread waiting on {}", cf);
+                        Runnable runnable = waiter.take();  // Waits for either a work task (runnable) or a termination marker
+                        if (runnable == COMPLETED) {
                             break;
-                        } else {
-                            LOG.debug("Main thread reused from parent thread \"{}\" on {}", channel.parentThread.getName(), cf);
-                            channel.runnable.run();
                         }
+                        LOG.debug("Thread reused while waiting on {}", cf);
+                        runnable.run();
+                    }
+                } catch (InterruptedException e) {
+                    // Stop waiting, as for completion
+                } finally {
+                    waiter.close();
+                    // Closed waiters are skipped when polled, so this only keeps queues from holding on to them
+                    if (listing != null) {
+                        unpublish(listing);
+                    }
+                    if (enclosingListing != null) {
+                        enclosing.unpublish(enclosingListing);
                     }
                 }
             }
         }
     }
 
-    void run(Runnable runnable, Thread parentThread, TimeBox timeBox) {
-        BlockingQueue<CrossThreadChannel> waiting = idleThreads.poll();
-        if (waiting != null) { // Check for a waiting thread first
-            CrossThreadChannel channel = new CrossThreadChannel(parentThread, runnable);
-            if (waiting.offer(channel)) {
-                return; // If we were able to offer to 1-sized queue, it will be picked up by main thread
+    /**
+     * Makes a waiting thread available to {@link #run(Runnable, Thread, TimeBox, String)}, unless it is already
+     * listed, which it may still be if it was last handed work by a different orchestrator.
+     *
+     * @param listing to publish
+     */
+    private void publish(IdleListing listing) {
+        if (listing.listed.compareAndSet(false, true)) {
+            idleThreads.offer(listing);
+        }
+    }
+
+    /**
+     * Removes a listing if still present once its thread stops waiting.
+     *
+     * @param listing to remove
+     */
+    private void unpublish(IdleListing listing) {
+        if (listing.listed.get()) {
+            idleThreads.remove(listing);
+        }
+    }
+
+    /**
+     * Takes the next waiting thread, if any, from those published. The thread may since have stopped waiting.
+     *
+     * @return waiter or null if none
+     */
+    private IdleWaiter pollIdleWaiter() {
+        IdleListing listing = idleThreads.poll();
+        if (listing == null) {
+            return null;
+        }
+        // Cleared before any offer to the waiter, so that it can republish once it has run whatever it is given
+        listing.listed.set(false);
+        return listing.waiter;
+    }
+
+    @Override
+    public ExecutorService getExecutorService(String name) {
+        return namedExecutorServices.get(name);
+    }
+
+    @Override
+    public void setExecutorService(String name, ExecutorService executorService) {
+        if (executorService == null) {
+            namedExecutorServices.remove(name);
+        } else {
+            namedExecutorServices.put(name, executorService);
+        }
+    }
+
+    /**
+     * Runs a spawned task.
+     *
+     * @param runnable     to run
+     * @param parentThread thread the task is being spawned from
+     * @param timeBox      in effect for the task
+     * @param executorName if not null, name of a registered ExecutorService that must be used to run the task
+     */
+    void run(Runnable runnable, Thread parentThread, TimeBox timeBox, String executorName) {
+        if (executorName != null) {
+            ExecutorService named = namedExecutorServices.get(executorName);
+            if (named != null) {
+                // Bypasses waiting threads and maxConcurrency, as the named ExecutorService has been chosen to bound this task
+                spawn(named, runnable, parentThread, timeBox, false);
+                return;
+            }
+            LOG.warn("No ExecutorService registered as \"{}\", using default", executorName);
+        }
+        IdleWaiter waiter;
+        while ((waiter = pollIdleWaiter()) != null) { // Check for a waiting thread first
+            if (waiter.offer(handOff(runnable, timeBox))) {
+                LOG.debug("Passed work from \"{}\" to waiting thread \"{}\"", parentThread.getName(), waiter.thread.getName());
+                return;
             }
+            // Else that thread is no longer waiting, so try the next one if any
+        }
+        // Else get one from the pool, unless that would exceed maxConcurrency
+        boolean limited = maxConcurrency > 0;
+        if (limited && !reserveInFlight()) {
+            LOG.debug("Deferring spawn from \"{}\", {} tasks in flight", parentThread.getName(), inFlight.get());
+            deferredSpawns.offer(new DeferredSpawn(runnable, parentThread, timeBox));
+            deferredSpawnCount.incrementAndGet();
+            startDeferredSpawns();  // In case a thread started waiting or a task finished before the offer
+            return;
         }
-        // Else get one from the pool
+        spawn(executorService, runnable, parentThread, timeBox, limited);
+    }
+
+    private void spawn(ExecutorService executorService, Runnable runnable, Thread parentThread, TimeBox timeBox, boolean limited) {
         executorService.execute(() ->
         {
             String nm = createThreadName();
             Thread.currentThread().setName(nm);
             LOG.debug("Spawned thread \"{}\" --> \"{}\"", parentThread.getName(), nm);
-            isBtManagedThread.set(true);
-            timeBox.register(this);
+            long startNanos = admissionControl ? System.nanoTime() : 0;
             try {
-                runnable.run();
+                runManaged(runnable, timeBox);
             } finally {
-                timeBox.deregister();
-                isBtManagedThread.set(false);
+                if (startNanos != 0) {
+                    DurationStats.spawned().record(System.nanoTime() - startNanos);
+                }
+                if (limited) {
+                    inFlight.decrementAndGet();
+                    startDeferredSpawns();
+                }
             }
         });
     }
 
+    /**
+     * Runs a spawned task in the current thread, flagged as a thread of this orchestrator and registered with the
+     * task's TimeBox for the duration, so that the thread is treated the same whether it came from an ExecutorService
+     * or was waiting in {@link #waitUntilComplete(long, CompletableFuture)}, possibly for another orchestrator.
+     *
+     * @param runnable to run
+     * @param timeBox  in effect for the task
+     */
+    private void runManaged(Runnable runnable, TimeBox timeBox) {
+        boolean managed = isBtManagedThread.get();
+        isBtManagedThread.set(true);
+        timeBox.register(this);
+        try {
+            runnable.run();
+        } finally {
+            timeBox.deregister();
+            if (!managed) {
+                // Removed rather than reset so that no entry lingers on pooled or short-lived (e.g. virtual) threads
+                isBtManagedThread.remove();
+            }
+        }
+    }
+
+    /**
+     * Wraps a spawned task for passing to a waiting thread.
+     *
+     * @param runnable to run
+     * @param timeBox  in effect for the task
+     * @return runnable to pass
+     */
+    private Runnable handOff(Runnable runnable, TimeBox timeBox) {
+        return () -> runManaged(runnable, timeBox);
+    }
+
+    /**
+     * Claims one of the maxConcurrency slots, if available.
+     *
+     * @return true iff claimed, in which case it must later be released by decrementing inFlight
+     */
+    private boolean reserveInFlight() {
+        int max = maxConcurrency;
+        if (inFlight.incrementAndGet() > max && max > 0) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hands deferred tasks to waiting threads, then spawns any remaining ones for as long as maxConcurrency allows.
+     * Safe to call from any thread at any time.
+     */
+    private void startDeferredSpawns() {
+        IdleWaiter waiter;
+        // A waiting thread checks for deferred tasks after publishing itself, and this checks for waiting threads
+        // after deferring, so one or the other sees the task
+        while (!deferredSpawns.isEmpty() && (waiter = pollIdleWaiter()) != null) {
+            offerDeferredSpawn(waiter);
+        }
+        while (!deferredSpawns.isEmpty() && reserveInFlight()) {
+            DeferredSpawn next = pollDeferredSpawn();
+            if (next == null) {
+                inFlight.decrementAndGet();  // Taken by another thread, so loop to check again
+            } else {
+                spawn(executorService, next.runnable, next.parentThread, next.timeBox, true);
+            }
+        }
+    }
+
+    /**
+     * Hands a deferred task, if there is one, to a waiting thread, since it would not otherwise see that task.
+     *
+     * @param waiter to hand task to
+     */
+    private void offerDeferredSpawn(IdleWaiter waiter) {
+        DeferredSpawn next = pollDeferredSpawn();
+        if (next != null && !waiter.offer(handOff(next.runnable, next.timeBox))) {
+            deferredSpawns.offerFirst(next);  // Waiter was handed other work in the meantime, so keep its place
+            deferredSpawnCount.incrementAndGet();
+        }
+    }
+
+    private DeferredSpawn pollDeferredSpawn() {
+        DeferredSpawn next = deferredSpawns.poll();
+        if (next != null) {
+            deferredSpawnCount.decrementAndGet();
+        }
+        return next;
+    }
+
+    /**
+     * Creates the TimeBox for an activation. An activation made from inside a task method, whether on this or
+     * another orchestrator, ends no later than that task method must.
+     *
+     * @param timeoutMs requested timeout, zero or less for none
+     * @return TimeBox to apply
+     */
+    private static TimeBox createTimeBox(long timeoutMs) {
+        return TimeBox.within(timeoutMs, ActiveManager.deadline());
+    }
+
     @Override
     public void activate(long timeoutMs, CompletableFuture<?>... futures) {
-        TimeBox timeBox = timeoutMs <= 0 ? TimeBox.NO_TIMEOUT : new TimeBox(timeoutMs);
+        TimeBox timeBox = createTimeBox(timeoutMs);
         executeWithMonitoringIfNeeded(timeBox, futures);
     }
 
     @Override
     public <T> CompletableFuture<T> activate(long timeoutMs, CompletableFuture<T> future) {
         CompletableFuture<?>[] futures = new CompletableFuture<?>[]{future};
-        TimeBox timeBox = timeoutMs <= 0 ? TimeBox.NO_TIMEOUT : new TimeBox(timeoutMs);
+        TimeBox timeBox = createTimeBox(timeoutMs);
         executeWithMonitoringIfNeeded(timeBox, futures);
         return future;
     }
@@ -273,6 +780,12 @@ public class Engine implements Orchestrator {
      * @param futures to execute
      */
     private void executeWithMonitoringIfNeeded(TimeBox timeBox, boolean direct, CompletionStage<?>... futures) {
+        if (recorded != null) {
+            throw new InvalidTaskException("Tasks cannot be activated while defining a GraphTemplate");
+        }
+        if (admissionControl && timeBox.timeBudget > 0) {
+            admit(timeBox, futures);
+        }
         Binding<?> pending = null;
         for (CompletionStage<?> next : futures) {
             if (next instanceof BascomTaskFuture) {
@@ -280,6 +793,9 @@ public class Engine implements Orchestrator {
                 pending = bascomTaskFuture.getBinding().activate(pending, timeBox);
             }
         }
+        if (batching) {
+            pending = Batcher.flushWave(pending);
+        }
         timeBox.monitorIfNeeded(this);
         timeBox.register(this);
         try {
@@ -292,13 +808,76 @@ public class Engine implements Orchestrator {
         }
     }
 
+    /**
+     * Rejects an activation that is predicted to take longer than what is left of its timeout, as described for
+     * {@link #setAdmissionControl(boolean)}.
+     *
+     * @param timeBox governs timeouts
+     * @param futures to be activated
+     * @throws AdmissionRejectedException if rejected
+     */
+    private void admit(TimeBox timeBox, CompletionStage<?>... futures) {
+        Map<Binding<?>, Long> estimates = new IdentityHashMap<>();
+        long graphNanos = 0;
+        for (CompletionStage<?> next : futures) {
+            if (next instanceof BascomTaskFuture) {
+                Binding<?> binding = ((BascomTaskFuture<?>) next).getBinding();
+                graphNanos = Math.max(graphNanos, binding.estimateUpstreamNanos(estimates));
+            }
+        }
+        if (estimates.isEmpty()) {
+            return;  // Nothing that is not already underway
+        }
+        long queueNanos = estimateQueueNanos();
+        long remainingMs = timeBox.getRemainingMs();
+        if (graphNanos + queueNanos > TimeUnit.MILLISECONDS.toNanos(remainingMs)) {
+            String msg = "Activation predicted to take " + TimeUnit.NANOSECONDS.toMillis(graphNanos + queueNanos)
+                    + "ms (" + TimeUnit.NANOSECONDS.toMillis(queueNanos) + "ms waiting for threads) with "
+                    + remainingMs + "ms left of timeout " + timeBox.timeBudget;
+            LOG.debug("Rejecting: {}", msg);
+            throw new AdmissionRejectedException(msg);
+        }
+    }
+
+    /**
+     * Estimates how long a newly spawned task would wait for a thread, from the number of tasks already waiting
+     * and the average time spawned tasks occupy a thread.
+     *
+     * @return estimate in nanoseconds, 0 if nothing is known
+     */
+    private long estimateQueueNanos() {
+        long taskNanos = DurationStats.spawned().getAverageNanos();
+        if (taskNanos == 0) {
+            return 0;
+        }
+        long waitNanos = 0;
+        ExecutorService es = executorService;
+        if (es instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) es;
+            waitNanos += pool.getQueue().size() * taskNanos / Math.max(1, pool.getMaximumPoolSize());
+        } else if (es instanceof ForkJoinPool) {
+            ForkJoinPool pool = (ForkJoinPool) es;
+            // Tasks spawned from within the pool's own threads are queued on those threads rather than as submissions
+            long queued = pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+            waitNanos += queued * taskNanos / Math.max(1, pool.getParallelism());
+        }
+        int max = maxConcurrency;
+        if (max > 0) {
+            // Can briefly be negative, since the count is updated after the deque
+            waitNanos += Math.max(0, deferredSpawnCount.get()) * taskNanos / max;
+        }
+        return waitNanos;
+    }
+
     @Override
     public void activateAndWait(long timeoutMs, CompletableFuture<?>... futures) {
-        TimeBox timeBox = timeoutMs <= 0 ? TimeBox.NO_TIMEOUT : new TimeBox(timeoutMs);
+        TimeBox timeBox = createTimeBox(timeoutMs);
         executeWithMonitoringIfNeeded(timeBox, futures);
         for (CompletableFuture<?> next : futures) {
             try {
-                next.get(timeBox.timeBudget, TimeUnit.MILLISECONDS);
+                // Each wait is for what is left of the budget rather than all of it, at least 1 since 0 means none
+                long waitMs = timeBox.timeBudget == 0 ? 0 : Math.max(1, timeBox.getRemainingMs());
+                next.get(waitMs, TimeUnit.MILLISECONDS);
             } catch (TimeoutException e) {
                 throw new TimeoutExceededException(e.getMessage());
             } catch (RuntimeException e) {
@@ -338,7 +917,7 @@ public class Engine implements Orchestrator {
 
     @Override
     public <T> CompletableFuture<List<T>> activateFuture(long timeoutMs, List<CompletableFuture<T>> futures) {
-        TimeBox timeBox = new TimeBox(timeoutMs);
+        TimeBox timeBox = createTimeBox(timeoutMs);
         CompletableFuture<?>[] array = new CompletableFuture[futures.size()];
         futures.toArray(array);
         executeWithMonitoringIfNeeded(timeBox, false, array);
@@ -351,7 +930,7 @@ public class Engine implements Orchestrator {
 
     @Override
     public <T> void activateAsReady(long timeoutMs, List<CompletableFuture<T>> futures, TriConsumer<T,Throwable,Integer> completionFn) {
-        TimeBox timeBox = new TimeBox(timeoutMs);
+        TimeBox timeBox = createTimeBox(timeoutMs);
         CompletableFuture<?>[] array = new CompletableFuture[futures.size()];
         futures.toArray(array);
         AtomicInteger countDown = new AtomicInteger(futures.size());
@@ -382,20 +961,18 @@ public class Engine implements Orchestrator {
     @Override
     public <BASE, SUB extends TaskInterface<BASE>> BASE task(SUB t) {
 
-        if (t instanceof Proxy) {
+        if (TaskProxies.isProxy(t)) {
             throw new InvalidTaskMethodException("Cannot add a previously added/wrapped task: " + t);
         }
 
-        Class<BASE> tc = extractTaskInterface(t);
+        Class<BASE> tc = TaskClassInfo.of(t.getClass()).getTaskInterface();
 
         @SuppressWarnings("unchecked")
         BASE base = (BASE) t;
         TaskWrapper<BASE> task = new TaskWrapper<>(this, base, t);
 
         @SuppressWarnings("unchecked")
-        BASE proxy = (BASE) Proxy.newProxyInstance(tc.getClassLoader(),
-                new Class[]{tc},
-                task);
+        BASE proxy = (BASE) TaskProxies.newProxy(tc, task);
 
         return proxy;
     }
@@ -471,86 +1048,61 @@ public class Engine implements Orchestrator {
         return task(new ConsumerTask.ConsumerTask2<>(this, in1, in2, fn));
     }
 
-
-
-
-
-
     /**
-     * Extracts the interface BASE from TaskInterface<BASE> in the class hierarchy.
+     * Returns the current TaskRunners, first to last.
      *
-     * @param task   to extract interface from
-     * @param <BASE> Generic type of TaskInterface
-     * @return extracted interface
+     * @return array that must not be modified
      */
-    <BASE> Class<BASE> extractTaskInterface(TaskInterface<BASE> task) {
-        Class<BASE> clazz = extractTaskInterfaceFromClass(task.getClass());
-        if (clazz == null) {
-            // This should not happen because compiler restricts calls to those that
-            // implement interface TaskInterface
-            throw new InvalidTaskException("Task does not implement com.ebay.bascomtask.core.TaskInterface: " + task);
-        } else return clazz;
-    }
-
-    @SuppressWarnings("unchecked")
-    <BASE> Class<BASE> extractTaskInterfaceFromClass(Class<?> clazz) {
-        Type[] types = clazz.getGenericInterfaces();
-        for (Type nextType : types) {
-            if (nextType instanceof ParameterizedType) {
-                ParameterizedType type = (ParameterizedType) nextType;
-                nextType = type.getRawType();
-            }
-            Class<BASE> classBase = (Class<BASE>) nextType;
-            if (nextType.equals(TaskInterface.class)) {
-                return classBase;
-            }
-            Class<BASE> xs = extractTaskInterfaceFromClass(classBase);
-            if (xs != null) {
-                return classBase;  // Return interface that extends TaskInterface
-            }
-        }
-
-        Class<?> sc = clazz.getSuperclass();
-        if (sc != null) {
-            return extractTaskInterfaceFromClass(sc);
-        }
-        return null;
-    }
-
-    List<TaskRunner> getRunners() {
-        return exposeRunners;
+    TaskRunner[] getRunners() {
+        return runners;
     }
 
     @Override
     public void firstInterceptWith(TaskRunner taskRunner) {
-        synchronized (runners) {
-            runners.addFirst(taskRunner);
+        synchronized (runnersLock) {
+            TaskRunner[] current = runners;
+            TaskRunner[] update = new TaskRunner[current.length + 1];
+            update[0] = taskRunner;
+            System.arraycopy(current, 0, update, 1, current.length);
+            runners = update;
         }
     }
 
     @Override
     public void lastInterceptWith(TaskRunner taskRunner) {
-        synchronized (runners) {
-            runners.addLast(taskRunner);
+        synchronized (runnersLock) {
+            TaskRunner[] current = runners;
+            TaskRunner[] update = Arrays.copyOf(current, current.length + 1);
+            update[current.length] = taskRunner;
+            runners = update;
         }
     }
 
     @Override
     public int getNumberOfInterceptors() {
-        return runners.size();
+        return runners.length;
     }
 
     @Override
     public void removeInterceptor(TaskRunner taskRunner) {
-        synchronized (runners) {
-            runners.remove(taskRunner);
+        synchronized (runnersLock) {
+            TaskRunner[] current = runners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(taskRunner)) {
+                    TaskRunner[] update = new TaskRunner[current.length - 1];
+                    System.arraycopy(current, 0, update, 0, i);
+                    System.arraycopy(current, i + 1, update, i, update.length - i);
+                    runners = update;
+                    return;
+                }
+            }
         }
     }
 
     @Override
     public void removeAllInterceptors() {
-        synchronized (runners) {
-            runners.clear();
+        synchronized (runnersLock) {
+            runners = NO_RUNNERS;
         }
     }
 }
@@ -0,0 +1,105 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Base class for task wrappers generated at compile time, which take the place of a {@link java.lang.reflect.Proxy}
+ * for a task interface. Each generated subclass implements one task interface, holding a {@link TaskMethod} constant
+ * for each method that it passes to the framework. Task methods returning a CompletableFuture are passed to
+ * {@link #dispatchTask(TaskMethod, Object[])}, which creates their binding directly, and other methods of the task
+ * interface are called directly on the user task. Only the methods of Object and the wiring methods of
+ * {@link TaskInterface} go through {@link #dispatch(TaskMethod, Object[])}. Not intended to be subclassed by hand.
+ *
+ * @author Brendan McCarthy
+ */
+public abstract class GeneratedTaskProxy {
+    private final TaskWrapper<?> wrapper;
+
+    /**
+     * Creates a wrapper for the task held by the given handler.
+     *
+     * @param handler as passed to {@link TaskProxyFactory#newProxy(InvocationHandler)}
+     */
+    protected GeneratedTaskProxy(InvocationHandler handler) {
+        this.wrapper = (TaskWrapper<?>) handler;
+    }
+
+    /**
+     * Returns the user task that calls are made on, for generated subclasses to hold in a field.
+     *
+     * @param handler as passed to the constructor
+     * @return user task
+     */
+    protected static Object original(InvocationHandler handler) {
+        return ((TaskWrapper<?>) handler).getOriginal();
+    }
+
+    /**
+     * Looks up a method, for generated subclasses to hold in static fields.
+     *
+     * @param type           declaring the method
+     * @param name           of method
+     * @param parameterTypes of method
+     * @return method
+     * @throws IllegalStateException if no such method exists, which means the generated code is out of date
+     */
+    protected static TaskMethod taskMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return TaskMethod.of(type.getMethod(name, parameterTypes));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Generated task proxy does not match " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Handles a call to a method of Object or a wiring method of {@link TaskInterface} as it would be handled for
+     * a {@link java.lang.reflect.Proxy}.
+     *
+     * @param taskMethod called
+     * @param args       passed, or null if there are none
+     * @return result of call
+     * @throws Throwable whatever the call throws
+     */
+    protected final Object dispatch(TaskMethod taskMethod, Object[] args) throws Throwable {
+        return wrapper.invoke(this, taskMethod, args);
+    }
+
+    /**
+     * Creates the binding for a call to a task method that returns a CompletableFuture.
+     *
+     * @param taskMethod called
+     * @param args       passed, or null if there are none
+     * @return placeholder CompletableFuture for the result of the call
+     */
+    protected final Object dispatchTask(TaskMethod taskMethod, Object[] args) {
+        return wrapper.fakeTaskMethod(taskMethod, args);
+    }
+
+    /**
+     * Wraps a checked exception that the called method does not declare, as a {@link java.lang.reflect.Proxy}
+     * would.
+     *
+     * @param t to wrap
+     * @return exception to throw
+     */
+    protected static UndeclaredThrowableException undeclared(Throwable t) {
+        return new UndeclaredThrowableException(t);
+    }
+}
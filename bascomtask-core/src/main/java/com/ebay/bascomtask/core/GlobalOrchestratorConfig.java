@@ -16,10 +16,15 @@
  **************************************************************************/
 package com.ebay.bascomtask.core;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
@@ -39,6 +44,9 @@ public class GlobalOrchestratorConfig {
 
     private static Config globalConfig = DEFUALT_CONFIG;
 
+    // Lazily created on first request, see getVirtualThreadExecutorService()
+    private static volatile ExecutorService virtualThreadExecutorService = null;
+
     interface ExtendedConfig extends CommonConfig {
         void initializeWith(BiConsumer<Orchestrator, Object> fn);
     }
@@ -48,9 +56,15 @@ public class GlobalOrchestratorConfig {
      */
     public abstract static class Config implements ExtendedConfig {
         protected ExecutorService executorService;
+        protected final Map<String, ExecutorService> namedExecutorServices = new HashMap<>();
         protected final List<TaskRunner> first = new ArrayList<>();
         protected final List<TaskRunner> last = new ArrayList<>();
         protected SpawnMode spawnMode;
+        protected SchedulingPolicy schedulingPolicy;
+        protected int maxConcurrency;
+        protected boolean admissionControl;
+        protected boolean memoizing;
+        protected long adaptiveLightNanos;
         protected long timeoutMs;
         protected TimeoutStrategy timeoutStrategy = TimeoutStrategy.PREVENT_NEW;
         protected final List<BiConsumer<Orchestrator, Object>> initializers = new ArrayList<>();
@@ -66,20 +80,38 @@ public class GlobalOrchestratorConfig {
          * @param arg          passed from user code, see {@link #afterDefaultInitialization(Orchestrator, Object)}
          */
         final public void updateConfigurationOn(Orchestrator orchestrator, Object arg) {
+            updateSettingsOn(orchestrator);
+            for (BiConsumer<Orchestrator, Object> next : initializers) {
+                next.accept(orchestrator, arg);
+            }
+            afterDefaultInitialization(orchestrator, arg);
+        }
+
+        /**
+         * Transfers settings and TaskRunners to the supplied orchestrator, without running initializers or
+         * {@link #afterDefaultInitialization(Orchestrator, Object)}.
+         *
+         * @param orchestrator to update
+         */
+        final void updateSettingsOn(Orchestrator orchestrator) {
             orchestrator.setSpawnMode(getSpawnMode());
+            orchestrator.setSchedulingPolicy(getSchedulingPolicy());
+            orchestrator.setMaxConcurrency(getMaxConcurrency());
+            orchestrator.setAdmissionControl(isAdmissionControl());
+            orchestrator.setMemoizing(isMemoizing());
+            orchestrator.setAdaptiveLightNanos(getAdaptiveLightNanos());
             orchestrator.setTimeoutMs(getTimeoutMs());
             orchestrator.setTimeoutStrategy(getTimeoutStrategy());
             orchestrator.setExecutorService(getExecutorService());
+            for (Map.Entry<String, ExecutorService> next : namedExecutorServices.entrySet()) {
+                orchestrator.setExecutorService(next.getKey(), next.getValue());
+            }
             for (TaskRunner next : first) {
                 orchestrator.firstInterceptWith(next);
             }
             for (TaskRunner next : last) {
                 orchestrator.lastInterceptWith(next);
             }
-            for (BiConsumer<Orchestrator, Object> next : initializers) {
-                next.accept(orchestrator, arg);
-            }
-            afterDefaultInitialization(orchestrator, arg);
         }
 
         /**
@@ -97,10 +129,16 @@ public class GlobalOrchestratorConfig {
         public final void restoreConfigurationDefaults(Object arg) {
             globalConfig = DEFUALT_CONFIG;
             setSpawnMode(SpawnMode.WHEN_NEEDED);
+            setSchedulingPolicy(null);
+            setMaxConcurrency(0);
+            setAdmissionControl(false);
+            setMemoizing(false);
+            setAdaptiveLightNanos(0);
             setTimeoutMs(0);
             setTimeoutStrategy(TimeoutStrategy.PREVENT_NEW);
             removeAllInterceptors();
             restoreDefaultExecutorService();
+            namedExecutorServices.clear();
             initializers.clear();
         }
 
@@ -114,6 +152,59 @@ public class GlobalOrchestratorConfig {
             this.spawnMode = mode;
         }
 
+        @Override
+        public SchedulingPolicy getSchedulingPolicy() {
+            return schedulingPolicy;
+        }
+
+        @Override
+        public void setSchedulingPolicy(SchedulingPolicy policy) {
+            this.schedulingPolicy = policy;
+        }
+
+        @Override
+        public long getAdaptiveLightNanos() {
+            return adaptiveLightNanos;
+        }
+
+        @Override
+        public void setAdaptiveLightNanos(long nanos) {
+            this.adaptiveLightNanos = nanos;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        @Override
+        public void setMaxConcurrency(int max) {
+            if (max < 0) {
+                throw new IllegalArgumentException("maxConcurrency must not be negative: " + max);
+            }
+            this.maxConcurrency = max;
+        }
+
+        @Override
+        public boolean isAdmissionControl() {
+            return admissionControl;
+        }
+
+        @Override
+        public void setAdmissionControl(boolean admissionControl) {
+            this.admissionControl = admissionControl;
+        }
+
+        @Override
+        public boolean isMemoizing() {
+            return memoizing;
+        }
+
+        @Override
+        public void setMemoizing(boolean memoizing) {
+            this.memoizing = memoizing;
+        }
+
         @Override
         public long getTimeoutMs() {
             return timeoutMs;
@@ -149,6 +240,20 @@ public class GlobalOrchestratorConfig {
             this.executorService = DEFAULT_EXECUTOR_SERVICE;
         }
 
+        @Override
+        public ExecutorService getExecutorService(String name) {
+            return namedExecutorServices.get(name);
+        }
+
+        @Override
+        public void setExecutorService(String name, ExecutorService executorService) {
+            if (executorService == null) {
+                namedExecutorServices.remove(name);
+            } else {
+                namedExecutorServices.put(name, executorService);
+            }
+        }
+
         @Override
         public void firstInterceptWith(TaskRunner runner) {
             first.add(runner);
@@ -190,6 +295,99 @@ public class GlobalOrchestratorConfig {
         globalConfig = config;
     }
 
+    /**
+     * Creates a work-stealing ExecutorService with a target parallelism equal to the number of available processors.
+     *
+     * @return new ForkJoinPool-based ExecutorService
+     * @see #newWorkStealingExecutorService(int)
+     */
+    public static ExecutorService newWorkStealingExecutorService() {
+        return newWorkStealingExecutorService(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a work-stealing ExecutorService based on {@link ForkJoinPool}. Unlike a fixed thread pool, it does not
+     * starve when task methods block on other BascomTask CompletableFutures (e.g. in nested orchestrations), since
+     * those waits are performed through {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)} and the pool
+     * compensates by temporarily adding threads while its workers are blocked. Tasks are processed in FIFO order.
+     *
+     * @param parallelism target number of actively running threads
+     * @return new ForkJoinPool-based ExecutorService
+     */
+    public static ExecutorService newWorkStealingExecutorService(int parallelism) {
+        return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * Indicates whether the running JVM supports virtual threads, which is true for Java 21 and later, and for
+     * Java 19 and 20 only when preview features are enabled. This is determined by creating the executor returned
+     * from {@link #getVirtualThreadExecutorService()}, so a successful check also makes that call inexpensive.
+     *
+     * @return true iff {@link #getVirtualThreadExecutorService()} can be called
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            getVirtualThreadExecutorService();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns an ExecutorService that runs each spawned task on its own virtual thread, so that the number of
+     * tasks simultaneously in flight is not capped by a pool size. This is well suited to task methods that
+     * mostly block on I/O. It can be applied globally or on any individual orchestrator:
+     * <pre>{@code
+     *     GlobalOrchestratorConfig.getConfig().setExecutorService(GlobalOrchestratorConfig.getVirtualThreadExecutorService());
+     * }</pre>
+     *
+     * <p>The same instance is returned on each call. The framework is compiled for Java 8, so the underlying
+     * executor is located reflectively and this call fails on JVMs that do not support virtual threads; use
+     * {@link #isVirtualThreadSupported()} to check first if needed.
+     *
+     * @return shared virtual-thread-per-task ExecutorService
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService getVirtualThreadExecutorService() {
+        ExecutorService es = virtualThreadExecutorService;
+        if (es == null) {
+            synchronized (GlobalOrchestratorConfig.class) {
+                es = virtualThreadExecutorService;
+                if (es == null) {
+                    es = virtualThreadExecutorService = createVirtualThreadExecutorService();
+                }
+            }
+        }
+        return es;
+    }
+
+    private static ExecutorService createVirtualThreadExecutorService() {
+        Method method = findVirtualThreadFactoryMethod();
+        if (method == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported in Java " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (InvocationTargetException e) {
+            // Present but unusable, e.g. a preview API in Java 19 or 20 without --enable-preview
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                throw new UnsupportedOperationException("Virtual threads are not enabled in Java " + System.getProperty("java.version"), e.getCause());
+            }
+            throw new RuntimeException("Unable to create virtual thread executor", e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
     /**
      * Set a TaskRunner creation function that will apply to every Orchestrator created in this this thread.
      * Each newly-created TaskRunner will be added first in the taskRunner chain.
@@ -0,0 +1,234 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.exceptions.InvalidTaskException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * A graph of task method calls that is wired once and then run any number of times, for example once per request,
+ * with different parameters. Wiring is done in the usual way against an Orchestrator supplied to a definition
+ * function, which returns the CompletableFuture for the graph result. Parameters are made available to that function
+ * as placeholder CompletableFutures, to be passed to task methods in place of the actual values:
+ * <pre>{@code
+ *     GraphTemplate<Page> template = GraphTemplate.define(($, params) -> {
+ *         CompletableFuture<User> user = $.task(userTask).fetch(params.get(0));
+ *         return $.task(pageTask).render(user);
+ *     });
+ *     ...
+ *     CompletableFuture<Page> page = template.instantiate(Orchestrator.create(), userId);
+ * }</pre>
+ *
+ * <p>Each instantiation creates new CompletableFutures for the task method calls needed for the result, which must
+ * then be activated as usual. It avoids creating task proxies and examining task classes and methods for
+ * annotations, but otherwise creates the same per-call objects as wiring directly would, and decides as usual at run
+ * time whether to spawn each call. Task objects are shared by all instantiations, so should be stateless. Only calls on
+ * task objects can be included, not conditionals, fate tasks or function tasks that take inputs, and the definition
+ * function must not activate any of them. Calls wired with {@link TaskInterface#activate()} are instead activated
+ * by each instantiation, and calls that the result does not depend on are created along with the others, as they
+ * would be if wired directly. Other CompletableFutures passed as arguments are shared by all instantiations.
+ *
+ * @author Brendan McCarthy
+ */
+public final class GraphTemplate<R> {
+    private final int paramCount;
+    private final Node[] nodes;  // In dependency order, so each node only refers to earlier ones
+    private final int resultIndex;
+
+    /**
+     * Provides placeholders for parameters to a {@link GraphTemplate} definition function.
+     */
+    public static class Params {
+        private final List<Slot> slots = new ArrayList<>();
+
+        /**
+         * Returns a placeholder for a parameter, to be passed to task methods as a CompletableFuture argument.
+         *
+         * @param index of parameter, starting from zero, as passed to {@link #instantiate(Orchestrator, Object...)}
+         * @param <T>   type of parameter
+         * @return placeholder for parameter
+         */
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> get(int index) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Negative parameter index: " + index);
+            }
+            while (slots.size() <= index) {
+                slots.add(new Slot(slots.size()));
+            }
+            return (CompletableFuture<T>) slots.get(index);
+        }
+    }
+
+    private static class Slot extends CompletableFuture<Object> {
+        final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Precomputed task method call in a template.
+     */
+    private static class Node {
+        final ReflectionBinding<?, ?> prototype;
+        final Object[] args;
+
+        // For each arg, the index of the node or parameter (encoded as -1-index) it is replaced by, or null if none
+        final Integer[] refs;
+
+        Node(ReflectionBinding<?, ?> prototype, Object[] args, Integer[] refs) {
+            this.prototype = prototype;
+            this.args = args;
+            this.refs = refs;
+        }
+    }
+
+    private GraphTemplate(int paramCount, Node[] nodes, int resultIndex) {
+        this.paramCount = paramCount;
+        this.nodes = nodes;
+        this.resultIndex = resultIndex;
+    }
+
+    /**
+     * Creates a template from a definition function.
+     *
+     * @param definitionFn to wire task method calls and return the result of the graph
+     * @param <R>          type of result
+     * @return template
+     * @throws InvalidTaskException if the graph contains other than calls on task objects, or if the definition
+     *                              function activates any task
+     */
+    public static <R> GraphTemplate<R> define(BiFunction<Orchestrator, Params, CompletableFuture<R>> definitionFn) {
+        // Not created through Orchestrator.create(), so that no initializers or LaneRunners see it
+        Engine recorder = new Engine("template");
+        recorder.startRecording();
+        Params params = new Params();
+        CompletableFuture<R> result = definitionFn.apply(recorder, params);
+        List<Node> nodes = new ArrayList<>();
+        Map<ReflectionBinding<?, ?>, Integer> indexes = new IdentityHashMap<>();
+        int resultIndex = record(nodeBinding(result), nodes, indexes);
+        for (Binding<?> next : recorder.getRecorded()) {
+            // Others wired in the definition function, which the result does not depend on
+            record(nodeBinding(next), nodes, indexes);
+        }
+        return new GraphTemplate<>(params.slots.size(), nodes.toArray(new Node[0]), resultIndex);
+    }
+
+    private static ReflectionBinding<?, ?> nodeBinding(CompletableFuture<?> cf) {
+        return nodeBinding(cf instanceof BascomTaskFuture ? ((BascomTaskFuture<?>) cf).getBinding() : null, cf);
+    }
+
+    private static ReflectionBinding<?, ?> nodeBinding(Binding<?> binding) {
+        return nodeBinding(binding, binding);
+    }
+
+    private static ReflectionBinding<?, ?> nodeBinding(Binding<?> binding, Object found) {
+        if (binding instanceof ReflectionBinding) {
+            return (ReflectionBinding<?, ?>) binding;
+        }
+        throw new InvalidTaskException("GraphTemplates can only include calls on task objects, found " + found);
+    }
+
+    /**
+     * Adds a node for a binding, after those for any bindings it depends on, unless already added.
+     *
+     * @param binding to add
+     * @param nodes   added so far
+     * @param indexes of bindings already added
+     * @return index of node
+     */
+    private static int record(ReflectionBinding<?, ?> binding, List<Node> nodes, Map<ReflectionBinding<?, ?>, Integer> indexes) {
+        Integer index = indexes.get(binding);
+        if (index == null) {
+            Object[] args = binding.getArgs() == null ? null : binding.getArgs().clone();
+            Integer[] refs = args == null ? null : new Integer[args.length];
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    Object next = args[i];
+                    if (next instanceof Slot) {
+                        refs[i] = -1 - ((Slot) next).index;
+                    } else if (next instanceof BascomTaskFuture) {
+                        refs[i] = record(nodeBinding((BascomTaskFuture<?>) next), nodes, indexes);
+                    }
+                    // Else a value, or a CompletableFuture from outside the framework which is shared
+                }
+            }
+            index = nodes.size();
+            nodes.add(new Node(binding, args, refs));
+            indexes.put(binding, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of parameters referenced in the definition function.
+     *
+     * @return count
+     */
+    public int getParameterCount() {
+        return paramCount;
+    }
+
+    /**
+     * Creates the task method calls of this template in the given Orchestrator. Parameters can be values or
+     * CompletableFutures, including any created by that Orchestrator.
+     *
+     * @param orchestrator to create task method calls in
+     * @param params       for placeholders, by index
+     * @return result of graph, not yet activated
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<R> instantiate(Orchestrator orchestrator, Object... params) {
+        if (params.length != paramCount) {
+            throw new IllegalArgumentException("Expected " + paramCount + " parameters but got " + params.length);
+        }
+        Engine engine = (Engine) orchestrator;
+        BascomTaskFuture<?>[] outputs = new BascomTaskFuture<?>[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            Object[] args = node.args;
+            if (args != null) {
+                args = args.clone();
+                for (int j = 0; j < args.length; j++) {
+                    Integer ref = node.refs[j];
+                    if (ref != null) {
+                        args[j] = ref >= 0 ? outputs[ref] : asFuture(params[-1 - ref]);
+                    }
+                }
+            }
+            @SuppressWarnings({"rawtypes"})
+            ReflectionBinding<?, ?> binding = new ReflectionBinding(engine, node.prototype, args);
+            outputs[i] = binding.getOutput();
+            if (binding.isActivate()) {
+                engine.executeAndReuseUntilReady(outputs[i]);
+            }
+        }
+        return (CompletableFuture<R>) outputs[resultIndex];
+    }
+
+    private static CompletableFuture<?> asFuture(Object param) {
+        return param instanceof CompletableFuture ? (CompletableFuture<?>) param : CompletableFuture.completedFuture(param);
+    }
+}
@@ -0,0 +1,143 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Hedged;
+import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One execution of a {@link Hedged} task method, which races the first call against a second call that is made
+ * if the first has not completed after a threshold. Also records the completion times of first calls, from which
+ * thresholds are learned.
+ *
+ * @param <T> type of task method result
+ * @author Brendan McCarthy
+ */
+class HedgedExecution<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(HedgedExecution.class);
+
+    // Number of recorded completion times needed before a threshold can be learned
+    static final int MIN_SAMPLES = 20;
+
+    private final Binding<T> binding;
+    private final long startNanos = System.nanoTime();
+
+    // Completed by the first call to complete normally, or by the last to fail
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    // Calls made that have not failed
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+
+    HedgedExecution(Binding<T> binding, Hedged hedged) {
+        this.binding = binding;
+        long thresholdNanos = thresholdNanos(binding.getName(), hedged);
+        if (thresholdNanos > 0) {
+            ScheduledFuture<?> timer = SharedScheduler.schedule(this::hedge, thresholdNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((v, t) -> timer.cancel(false));
+        }
+    }
+
+    /**
+     * Returns how long to wait before making a second call.
+     *
+     * @param key    task-plus-method name
+     * @param hedged settings
+     * @return nanoseconds, or 0 if no second call should be made
+     */
+    static long thresholdNanos(String key, Hedged hedged) {
+        if (hedged.afterMs() > 0) {
+            return TimeUnit.MILLISECONDS.toNanos(hedged.afterMs());
+        }
+        DurationStats.Histogram histogram = DurationStats.histogram(key);
+        if (histogram.getCount() < MIN_SAMPLES) {
+            return 0;
+        }
+        return histogram.getPercentileNanos(hedged.percentile());
+    }
+
+    CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * Supplies the outcome of the first call.
+     *
+     * @param cf returned from the task method
+     */
+    void first(CompletableFuture<T> cf) {
+        race(cf, true);
+    }
+
+    private void race(CompletableFuture<T> cf, boolean first) {
+        cf.whenComplete((v, t) -> {
+            if (t == null) {
+                if (first) {
+                    // Before completing the result, so that calls made once it completes see this one
+                    DurationStats.histogram(binding.getName()).record(System.nanoTime() - startNanos);
+                }
+                result.complete(v);
+            } else {
+                fail(t);
+            }
+        });
+    }
+
+    /**
+     * Records the failure of a call, which only fails the result if no other call can still succeed.
+     *
+     * @param t thrown by the call
+     */
+    void fail(Throwable t) {
+        if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+        }
+    }
+
+    private void hedge() {
+        if (!result.isDone()) {
+            outstanding.incrementAndGet();
+            LOG.debug("Hedging {}", binding.getName());
+            // Spawned, since this is the scheduler thread
+            Thread parentThread = Thread.currentThread();
+            binding.engine.run(() -> second(parentThread), parentThread, binding.getTimeBox(), binding.getExecutorName());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void second(Thread parentThread) {
+        Object rv;
+        try {
+            rv = binding.runAgain(parentThread);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        if (rv instanceof CompletableFuture) {
+            race((CompletableFuture<T>) rv, false);
+        } else {
+            fail(new InvalidTaskMethodException("Return value is not a CompletableFuture: " + rv));
+        }
+    }
+}
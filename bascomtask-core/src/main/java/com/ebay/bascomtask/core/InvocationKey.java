@@ -0,0 +1,76 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Identifies a task method invocation by its target, method and arguments, so that equivalent invocations can
+ * share a result. Targets and arguments are compared with equals(), which for CompletableFuture arguments means
+ * that they must be the same instance. An optional settings value further distinguishes invocations that are
+ * otherwise the same but must not share a result.
+ *
+ * @author Brendan McCarthy
+ */
+final class InvocationKey {
+    private final Object target;
+    private final Method method;
+    private final Object[] args;
+    private final Object settings;
+    private final int hash;
+
+    InvocationKey(Object target, Method method, Object[] args) {
+        this(target, method, args, null);
+    }
+
+    InvocationKey(Object target, Method method, Object[] args, Object settings) {
+        this.target = target;
+        this.method = method;
+        this.args = args == null ? new Object[0] : args;
+        this.settings = settings;
+        this.hash = 31 * (31 * (31 * target.hashCode() + method.hashCode()) + Arrays.deepHashCode(this.args))
+                + Objects.hashCode(settings);
+    }
+
+    Object[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InvocationKey)) return false;
+        InvocationKey that = (InvocationKey) o;
+        return hash == that.hash
+                && method.equals(that.method)
+                && target.equals(that.target)
+                && Arrays.deepEquals(args, that.args)
+                && Objects.equals(settings, that.settings);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return target + "." + method.getName() + Arrays.deepToString(args);
+    }
+}
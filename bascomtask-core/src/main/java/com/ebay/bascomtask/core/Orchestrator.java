@@ -92,6 +92,23 @@ public interface Orchestrator extends CommonConfig {
         return new Engine(name, arg);
     }
 
+    /**
+     * Prepares the given task classes for use, so that the reflection that is otherwise done the first time a task
+     * of each class is added to an Orchestrator, and the first time each of its task methods is called, is done
+     * now instead. Calling this at service startup keeps that cost out of the first requests. Results are retained
+     * for the life of each class, so calling this more than once for the same class is harmless. Calling it is
+     * never required.
+     *
+     * @param taskClasses user task classes, each implementing an interface that extends {@link TaskInterface}
+     * @throws com.ebay.bascomtask.exceptions.InvalidTaskException if a class does not implement such an interface
+     * @throws com.ebay.bascomtask.exceptions.InvalidTaskMethodException if a task method has invalid annotations
+     */
+    static void warmUp(Class<?>... taskClasses) {
+        for (Class<?> next : taskClasses) {
+            TaskClassInfo.of(next).warmUp();
+        }
+    }
+
     /**
      * Returns the orchestrator used to activate the current task method in the current thread. This is provided
      * for use inside task methods when adding new tasks, and is an alternative to passing in the outer orchestrator
@@ -210,6 +227,8 @@ public interface Orchestrator extends CommonConfig {
      *
      * @param timeoutMs timout in milliseconds
      * @param futures   to activate
+     * @throws com.ebay.bascomtask.exceptions.AdmissionRejectedException if admission control is enabled and
+     *                  predicts the timeout would be exceeded, see {@link #setAdmissionControl(boolean)}
      */
     void activate(long timeoutMs, CompletableFuture<?>... futures);
 
@@ -291,6 +310,8 @@ public interface Orchestrator extends CommonConfig {
      *
      * @param timeoutMs timout in milliseconds
      * @param futures   to activate
+     * @throws com.ebay.bascomtask.exceptions.AdmissionRejectedException if admission control is enabled and
+     *                  predicts the timeout would be exceeded, see {@link #setAdmissionControl(boolean)}
      */
     void activateAndWait(long timeoutMs, CompletableFuture<?>... futures);
 
@@ -16,11 +16,15 @@
  **************************************************************************/
 package com.ebay.bascomtask.core;
 
-import com.ebay.bascomtask.annotations.Light;
+import com.ebay.bascomtask.annotations.Batchable;
+import com.ebay.bascomtask.annotations.Hedged;
+import com.ebay.bascomtask.annotations.Retry;
+import com.ebay.bascomtask.annotations.RunOn;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
  * Binding for a task with a method to be called through reflection. This is the standard case for user POJO tasks.
@@ -31,23 +35,102 @@ class ReflectionBinding<USERTASKTYPE, RETURNTYPE> extends Binding<RETURNTYPE> {
     private final TaskWrapper<USERTASKTYPE> taskWrapper;
     private final Object userTask;
     private final Method method;
+    private final TaskMethod taskMethod;
     private final Object[] args;
     private final boolean light;
     private final boolean runSpawned;
+    private final String executorName;
 
-    ReflectionBinding(Engine engine, TaskWrapper<USERTASKTYPE> taskWrapper, Object userTask, Method method, Object[] args) {
+    // Both non-null iff calls to this task method may be combined with others
+    private final Batchable batchable;
+    private final Method batchMethod;
+
+    // Non-null iff results of this task method are held in the ResultCache
+    private final ResultCache.Region cacheRegion;
+
+    // Whether concurrent equivalent calls across Orchestrators share one execution
+    private final boolean singleFlight;
+
+    // Zero if there is no timeout for this task method alone
+    private final long timeoutMs;
+
+    // Non-null iff a slow call should be raced against a second one
+    private final Hedged hedged;
+
+    // Non-null iff a failed call should be retried
+    private final Retry retry;
+
+    // Set on bindings that recompute a cached result, which must not be answered from the cache
+    private boolean refresh = false;
+
+    ReflectionBinding(Engine engine, TaskWrapper<USERTASKTYPE> taskWrapper, Object userTask, TaskMethod taskMethod, Object[] args) {
         super(engine);
         this.userTask = userTask;
         this.taskWrapper = taskWrapper;
-        this.method = method;
+        this.method = taskMethod.getMethod();
+        this.taskMethod = taskMethod;
         this.args = args;
 
+        TaskClassInfo.MethodInfo info = TaskClassInfo.of(userTask.getClass()).getMethodInfo(method);
+
         // Only one of these should be set -- that is also true in TaskWrapper
         // An explicit call on the task overrules a @Light annotation if present
-        this.runSpawned = taskWrapper.isRunSpawned();
-        this.light = taskWrapper.isLight()
-                || (Utils.getAnnotation(userTask, method, Light.class) != null && !taskWrapper.explicitRunSpawn());
+        // A @RunOn annotation is treated as an implicit runSpawned() unless overruled by an explicit call
+        RunOn runOn = taskWrapper.isLight() || taskWrapper.explicitRunSpawn() ? null : info.runOn;
+        this.executorName = runOn == null ? taskWrapper.getRunOn() : runOn.value();
+        this.runSpawned = taskWrapper.isRunSpawned() || runOn != null;
+        this.light = taskWrapper.isLight() || (info.light && !taskWrapper.explicitRunSpawn() && runOn == null);
+
+        this.batchable = info.batchable;
+        this.batchMethod = info.batchMethod;
+        if (batchable != null) {
+            engine.enableBatching();
+        }
+
+        this.cacheRegion = info.cacheable == null ? null : ResultCache.region(userTask.getClass(), method, info.cacheable);
+        this.singleFlight = info.singleFlight;
+
+        // An explicit call on the task overrules a @Timeout annotation if present
+        this.timeoutMs = taskWrapper.getTimeoutMs() > 0 ? taskWrapper.getTimeoutMs() : info.timeoutMs;
+        this.hedged = info.hedged;
+        this.retry = info.retry;
+
+        wrapArgs();
+    }
+
+    /**
+     * Creates a binding for the same task method as an existing one, with the same settings but different
+     * arguments, without repeating the work of determining those settings.
+     *
+     * @param engine    to run in
+     * @param prototype to copy settings from
+     * @param args      for this invocation
+     */
+    ReflectionBinding(Engine engine, ReflectionBinding<USERTASKTYPE, RETURNTYPE> prototype, Object[] args) {
+        super(engine);
+        this.userTask = prototype.userTask;
+        this.taskWrapper = prototype.taskWrapper;
+        this.method = prototype.method;
+        this.taskMethod = prototype.taskMethod;
+        this.args = args;
+        this.executorName = prototype.executorName;
+        this.runSpawned = prototype.runSpawned;
+        this.light = prototype.light;
+        this.batchable = prototype.batchable;
+        this.batchMethod = prototype.batchMethod;
+        if (batchable != null) {
+            engine.enableBatching();
+        }
+        this.cacheRegion = prototype.cacheRegion;
+        this.singleFlight = prototype.singleFlight;
+        this.timeoutMs = prototype.timeoutMs;
+        this.hedged = prototype.hedged;
+        this.retry = prototype.retry;
 
+        wrapArgs();
+    }
+
+    private void wrapArgs() {
         if (args != null) {
             for (Object next : args) {
                 if (next instanceof CompletableFuture) {
@@ -58,9 +141,131 @@ class ReflectionBinding<USERTASKTYPE, RETURNTYPE> extends Binding<RETURNTYPE> {
         }
     }
 
+    @Override
+    Binding<?> runAccordingToMode(Binding<?> pending, String src) {
+        if (cacheRegion != null || singleFlight) {
+            InvocationKey key = valueKey();
+            if (key != null) {
+                if (cacheRegion != null && !refresh && completeFromCache(key)) {
+                    return pending;
+                }
+                if (singleFlight && SingleFlightRegistry.attach(this, key)) {
+                    return pending;
+                }
+            }
+        }
+        if (batchable != null) {
+            Batcher.collect(this);
+            return pending;
+        }
+        return super.runAccordingToMode(pending, src);
+    }
+
+    /**
+     * Completes this binding from the ResultCache if a result is present, else arranges for its result to be
+     * added there once computed.
+     *
+     * @param key from {@link #valueKey()}
+     * @return true iff completed from the cache
+     */
+    private boolean completeFromCache(InvocationKey key) {
+        ResultCache.Result result = cacheRegion.get(key);
+        if (result != null) {
+            cacheRegion.refreshIfDue(key, result, refreshFn(key));
+            bindResult(CompletableFuture.completedFuture(result.value));
+            return true;
+        }
+        getOutput().thenAccept(v -> cacheRegion.put(key, v));
+        return false;
+    }
+
+    /**
+     * Returns a function that recomputes the cached result for a key. It captures the task and argument values but
+     * not this binding, which would otherwise keep the graph it belongs to reachable until the refresh runs.
+     *
+     * @param key from {@link #valueKey()}
+     * @return function returning a CompletableFuture for the new result
+     */
+    private Supplier<Object> refreshFn(InvocationKey key) {
+        Object task = userTask;
+        Method method = this.method;
+        Object[] values = key.getArgs();
+        return () -> refresh(task, method, values);
+    }
+
+    /**
+     * Runs a task method in the ResultCache's own Orchestrator, so that TaskRunners see it as they would any
+     * other call. CompletableFuture parameters are given completed CompletableFutures holding the argument values.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object refresh(Object task, Method method, Object[] values) {
+        Engine engine = ResultCache.getRefreshEngine();
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            args[i] = CompletableFuture.class.isAssignableFrom(types[i]) ? CompletableFuture.completedFuture(values[i]) : values[i];
+        }
+        TaskWrapper<Object> wrapper = new TaskWrapper<>(engine, task, (TaskInterface<Object>) task);
+        ReflectionBinding<Object, Object> binding = new ReflectionBinding<>(engine, wrapper, task, TaskMethod.of(method), args);
+        binding.refresh = true;
+        return engine.activate(binding.getOutput());
+    }
+
+    /**
+     * Creates a key from the task class, method and argument values, replacing each CompletableFuture argument
+     * by its value. Only called once all arguments are ready.
+     *
+     * @return key, or null if the arguments cannot be resolved to values
+     */
+    private InvocationKey valueKey() {
+        Object[] values = args == null ? null : args.clone();
+        if (values != null) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] instanceof BascomTaskFuture) {
+                        values[i] = ((BascomTaskFuture<?>) values[i]).getCompletedValue();
+                    } else if (values[i] instanceof CompletableFuture) {
+                        values[i] = ((CompletableFuture<?>) values[i]).join();
+                    }
+                }
+            } catch (CompletionException e) {
+                return null;  // Should not happen since arguments are ready
+            }
+        }
+        return new InvocationKey(userTask.getClass(), method, values);
+    }
+
+    Batchable getBatchable() {
+        return batchable;
+    }
+
+    Method getBatchMethod() {
+        return batchMethod;
+    }
+
+    Object getUserTask() {
+        return userTask;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    Object[] getArgs() {
+        return args;
+    }
+
+    String getTaskName() {
+        return taskWrapper.getName();
+    }
+
+    boolean isActivate() {
+        return taskWrapper.isActivate();
+    }
+
     @Override
     public boolean isLight() {
-        return light;
+        return light || (!runSpawned && engine.isAdaptivelyLight(getName()));
     }
 
     @Override
@@ -68,10 +273,29 @@ class ReflectionBinding<USERTASKTYPE, RETURNTYPE> extends Binding<RETURNTYPE> {
         return runSpawned;
     }
 
+    @Override
+    public String getExecutorName() {
+        return executorName;
+    }
+
+    @Override
+    long getTaskTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    Hedged getHedged() {
+        return hedged;
+    }
+
+    @Override
+    Retry getRetry() {
+        return retry;
+    }
+
     @Override
     String doGetExecutionName() {
-        String taskName = taskWrapper.getName();
-        return taskName + "." + method.getName();
+        return getTaskName() + "." + method.getName();
     }
 
     @Override
@@ -81,24 +305,7 @@ class ReflectionBinding<USERTASKTYPE, RETURNTYPE> extends Binding<RETURNTYPE> {
 
     @Override
     protected Object invokeTaskMethod() {
-        try {
-            // Don't require public access, especially because of poor JVM exception messages, e.g. failure to make
-            // an interface public, when BT accessed as a library, can otherwise result in
-            // IllegalAccessException ... cannot access a member of interface ... with modifiers "public abstract"
-            method.setAccessible(true);
-            return method.invoke(userTask, args);
-        } catch (InvocationTargetException itx) {
-            Throwable actual = itx.getCause();
-            RuntimeException re;
-            if (actual instanceof RuntimeException) {
-                re = (RuntimeException) actual;
-            } else {
-                re = new RuntimeException(actual);
-            }
-            throw re;
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Unable to invoke method", e);
-        }
+        return taskMethod.invoke(userTask, args);
     }
 
     @Override
@@ -0,0 +1,392 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Cacheable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * JVM-wide store of results for task methods marked with {@link Cacheable}. Each task method has its own region,
+ * bounded by {@link Cacheable#maxEntries()} with approximate least-recently-used eviction, and entries expire after
+ * {@link Cacheable#ttlMs()}. Hit and miss counts are kept for each region and can be read through
+ * {@link #getStats(Class, String)} and {@link #getStats()}. Results due for refresh, as set by
+ * {@link Cacheable#refreshAfterMs()}, are recomputed on a separate ExecutorService that can be set with
+ * {@link #setRefreshExecutorService(ExecutorService)}.
+ *
+ * @author Brendan McCarthy
+ */
+public class ResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final ConcurrentMap<InvocationKey, Region> regions = new ConcurrentHashMap<>();
+
+    // Lazily created on first refresh unless set, see getRefreshExecutorService()
+    private static volatile ExecutorService refreshExecutorService = null;
+
+    // Lazily created on first refresh, see getRefreshEngine()
+    private static volatile Engine refreshEngine = null;
+
+    private ResultCache() {
+    }
+
+    /**
+     * Counts for one or more cache regions.
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long refreshes;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, long refreshes, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.refreshes = refreshes;
+            this.size = size;
+        }
+
+        public long getHitCount() {
+            return hits;
+        }
+
+        public long getMissCount() {
+            return misses;
+        }
+
+        /**
+         * Number of entries removed to stay within {@link Cacheable#maxEntries()}, not counting expired ones.
+         *
+         * @return eviction count
+         */
+        public long getEvictionCount() {
+            return evictions;
+        }
+
+        /**
+         * Number of background refreshes started, see {@link Cacheable#refreshAfterMs()}.
+         *
+         * @return refresh count
+         */
+        public long getRefreshCount() {
+            return refreshes;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        Stats plus(Stats that) {
+            return new Stats(hits + that.hits, misses + that.misses, evictions + that.evictions,
+                    refreshes + that.refreshes, size + that.size);
+        }
+
+        @Override
+        public String toString() {
+            return "Stats(hits=" + hits + ",misses=" + misses + ",evictions=" + evictions + ",refreshes=" + refreshes
+                    + ",size=" + size + ")";
+        }
+    }
+
+    static class Result {
+        final Object value;
+        final long expiresAtNanos;
+        final long refreshAtNanos;
+
+        // Set while a refresh is underway, so that only one is started
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        // Tick of the region clock when last put or returned, so that the smallest is the least recently used
+        private volatile long lastUsed;
+
+        Result(Object value, long expiresAtNanos, long refreshAtNanos, long lastUsed) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.refreshAtNanos = refreshAtNanos;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * A result considered for eviction, with its tick copied so that it holds still while candidates are sorted.
+     */
+    private static class Candidate {
+        final InvocationKey key;
+        final Result result;
+        final long lastUsed;
+
+        Candidate(InvocationKey key, Result result) {
+            this.key = key;
+            this.result = result;
+            this.lastUsed = result.lastUsed;
+        }
+    }
+
+    /**
+     * Results for one task method. Lookups take no lock; each marks its result with a tick from a region clock, and
+     * when a put takes the region over its limit, one thread at a time removes the results with the oldest ticks.
+     * Puts made while that is underway can leave the region briefly over its limit, which is why least-recently-used
+     * eviction here is approximate.
+     */
+    static class Region {
+        private final Class<?> taskClass;
+        private final String methodName;
+        private final long ttlNanos;
+        private final long refreshNanos;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong refreshes = new AtomicLong();
+        private final AtomicLong clock = new AtomicLong();
+        private final AtomicBoolean evicting = new AtomicBoolean(false);
+        private final int maxEntries;
+        private final ConcurrentMap<InvocationKey, Result> entries = new ConcurrentHashMap<>();
+
+        Region(Class<?> taskClass, Method method, Cacheable cacheable) {
+            this.taskClass = taskClass;
+            this.methodName = method.getName();
+            this.ttlNanos = cacheable.ttlMs() * 1_000_000L;
+            this.refreshNanos = cacheable.refreshAfterMs() * 1_000_000L;
+            this.maxEntries = cacheable.maxEntries();
+        }
+
+        /**
+         * Looks up a result, counting a hit or miss.
+         *
+         * @param key to look up
+         * @return result, or null if none or expired
+         */
+        Result get(InvocationKey key) {
+            Result entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAtNanos - System.nanoTime() <= 0) {
+                    entries.remove(key, entry);
+                    entry = null;
+                } else {
+                    entry.lastUsed = clock.incrementAndGet();
+                }
+            }
+            (entry == null ? misses : hits).incrementAndGet();
+            return entry;
+        }
+
+        void put(InvocationKey key, Object value) {
+            long now = System.nanoTime();
+            Result entry = new Result(value, now + ttlNanos, refreshNanos > 0 ? now + refreshNanos : Long.MAX_VALUE,
+                    clock.incrementAndGet());
+            entries.put(key, entry);
+            if (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+                try {
+                    evict();
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        }
+
+        /**
+         * Removes expired results, then the least recently used ones until the region is back within its limit.
+         * Large regions are trimmed a little further, so that the scan is not repeated on every put once full.
+         */
+        private void evict() {
+            long now = System.nanoTime();
+            List<Candidate> live = new ArrayList<>(entries.size());
+            for (Map.Entry<InvocationKey, Result> next : entries.entrySet()) {
+                Result result = next.getValue();
+                if (result.expiresAtNanos - now <= 0) {
+                    entries.remove(next.getKey(), result);
+                } else {
+                    live.add(new Candidate(next.getKey(), result));
+                }
+            }
+            int excess = live.size() - (maxEntries - maxEntries / 8);
+            if (live.size() > maxEntries && excess > 0) {
+                live.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+                for (int i = 0; i < excess; i++) {
+                    Candidate next = live.get(i);
+                    if (entries.remove(next.key, next.result)) {
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Starts a background refresh of a result if it is due for one and none is already underway. The
+         * result remains in use until the refresh replaces it.
+         *
+         * @param key       of result
+         * @param result    as returned from {@link #get(InvocationKey)}
+         * @param computeFn to compute a CompletableFuture holding the replacement value
+         */
+        void refreshIfDue(InvocationKey key, Result result, Supplier<Object> computeFn) {
+            if (result.refreshAtNanos != Long.MAX_VALUE && result.refreshAtNanos - System.nanoTime() <= 0
+                    && result.refreshing.compareAndSet(false, true)) {
+                refreshes.incrementAndGet();
+                getRefreshExecutorService().execute(() -> refresh(key, result, computeFn));
+            }
+        }
+
+        private void refresh(InvocationKey key, Result result, Supplier<Object> computeFn) {
+            try {
+                Object rv = computeFn.get();
+                if (rv instanceof CompletableFuture) {
+                    ((CompletableFuture<?>) rv).whenComplete((v, t) -> {
+                        if (t == null) {
+                            put(key, v);
+                        } else {
+                            refreshFailed(key, result, t);
+                        }
+                    });
+                } else {
+                    refreshFailed(key, result, new IllegalStateException("Not a CompletableFuture: " + rv));
+                }
+            } catch (RuntimeException e) {
+                refreshFailed(key, result, e);
+            }
+        }
+
+        private void refreshFailed(InvocationKey key, Result result, Throwable t) {
+            LOG.warn("Refresh of {} failed, retaining previous result: {}", key, t.toString());
+            result.refreshing.set(false);  // Allows the next use to try again
+        }
+
+        Stats getStats() {
+            return new Stats(hits.get(), misses.get(), evictions.get(), refreshes.get(), entries.size());
+        }
+    }
+
+    /**
+     * Returns the region for a task method, creating it if needed.
+     *
+     * @param taskClass of user task
+     * @param method    task method
+     * @param cacheable settings for region
+     * @return region
+     */
+    static Region region(Class<?> taskClass, Method method, Cacheable cacheable) {
+        return regions.computeIfAbsent(new InvocationKey(taskClass, method, null), k -> new Region(taskClass, method, cacheable));
+    }
+
+    /**
+     * Returns counts for all task methods with the given name on the given task class, combined.
+     *
+     * @param taskClass  class of user task
+     * @param methodName name of task method
+     * @return counts, all zero if no such task method has been called
+     */
+    public static Stats getStats(Class<?> taskClass, String methodName) {
+        Stats stats = new Stats(0, 0, 0, 0, 0);
+        for (Region next : regions.values()) {
+            if (next.taskClass == taskClass && next.methodName.equals(methodName)) {
+                stats = stats.plus(next.getStats());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns counts for all task methods combined.
+     *
+     * @return counts
+     */
+    public static Stats getStats() {
+        Stats stats = new Stats(0, 0, 0, 0, 0);
+        for (Region next : regions.values()) {
+            stats = stats.plus(next.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the ExecutorService used for background refreshes. Unless set, this is a pool of low-priority daemon
+     * threads created on first use.
+     *
+     * @return ExecutorService
+     */
+    public static ExecutorService getRefreshExecutorService() {
+        ExecutorService es = refreshExecutorService;
+        if (es == null) {
+            synchronized (ResultCache.class) {
+                es = refreshExecutorService;
+                if (es == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    es = refreshExecutorService = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "BT-refresh-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return es;
+    }
+
+    /**
+     * Returns the Orchestrator that background refreshes run in, created once with the global settings and
+     * TaskRunners but without the initializers that apply to Orchestrators created by user code.
+     *
+     * @return engine for refreshes
+     */
+    static Engine getRefreshEngine() {
+        Engine engine = refreshEngine;
+        if (engine == null) {
+            synchronized (ResultCache.class) {
+                engine = refreshEngine;
+                if (engine == null) {
+                    engine = refreshEngine = new Engine("refresh");
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Sets the ExecutorService used for background refreshes, so that they do not compete with task methods
+     * serving requests.
+     *
+     * @param executorService to use, or null to revert to the default
+     */
+    public static void setRefreshExecutorService(ExecutorService executorService) {
+        refreshExecutorService = executorService;
+    }
+
+    /**
+     * Removes all results and counts.
+     */
+    public static void clear() {
+        regions.clear();
+        refreshEngine = null;  // Recreated on next use, picking up any change to the global configuration
+    }
+}
@@ -0,0 +1,161 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Retry;
+import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One execution of a {@link Retry} task method, which calls it again after a failure until a call succeeds, the
+ * failure is not retryable, or attempts or time run out. Delays between calls are waited out on the
+ * {@link SharedScheduler} rather than on the thread that made the failed call.
+ *
+ * @param <T> type of task method result
+ * @author Brendan McCarthy
+ */
+class RetryingExecution<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(RetryingExecution.class);
+
+    private final Binding<T> binding;
+    private final Retry retry;
+
+    // Completed by the first call to complete normally, or by the last to fail
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    // Calls made so far; only one call is ever outstanding so this needs no synchronization beyond visibility
+    private volatile int attempts = 1;
+
+    RetryingExecution(Binding<T> binding, Retry retry) {
+        this.binding = binding;
+        this.retry = retry;
+    }
+
+    /**
+     * Returns the delay before the next call, growing exponentially up to a maximum and then reduced by a
+     * random amount.
+     *
+     * @param retry    settings
+     * @param attempts calls made so far, at least 1
+     * @param random   value between 0 and 1
+     * @return milliseconds
+     */
+    static long delayMs(Retry retry, int attempts, double random) {
+        double delay = retry.delayMs() * Math.pow(retry.multiplier(), attempts - 1);
+        delay = Math.min(delay, retry.maxDelayMs());
+        double jitter = Math.max(0, Math.min(1, retry.jitter()));
+        return Math.max(0, Math.round(delay * (1 - jitter * random)));
+    }
+
+    /**
+     * Returns whether a call that failed with the given exception may be retried.
+     *
+     * @param retry settings
+     * @param t     thrown by the call, unwrapped
+     * @return true iff retryable
+     */
+    static boolean isRetryable(Retry retry, Throwable t) {
+        if (t instanceof TimeoutExceededException) {
+            return false;
+        }
+        Class<? extends Throwable>[] retryOn = retry.retryOn();
+        if (retryOn.length == 0) {
+            return t instanceof Exception;
+        }
+        for (Class<? extends Throwable> next : retryOn) {
+            if (next.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * Supplies the outcome of a call.
+     *
+     * @param cf returned from the task method
+     */
+    void follow(CompletableFuture<T> cf) {
+        cf.whenComplete((v, t) -> {
+            if (t == null) {
+                result.complete(v);
+            } else {
+                fail(t);
+            }
+        });
+    }
+
+    /**
+     * Records the failure of a call, which either schedules another call or fails the result.
+     *
+     * @param t thrown by the call
+     */
+    void fail(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (attempts >= retry.maxAttempts() || !isRetryable(retry, t) || binding.getOutput().isDone()) {
+            result.completeExceptionally(t);
+            return;
+        }
+        long delayMs = delayMs(retry, attempts, ThreadLocalRandom.current().nextDouble());
+        TimeBox timeBox = binding.getTimeBox();
+        if (timeBox.timeBudget > 0 && timeBox.getRemainingMs() <= delayMs) {
+            LOG.debug("Not retrying {} since its timeout would be exceeded", binding.getName());
+            result.completeExceptionally(t);
+            return;
+        }
+        LOG.debug("Retrying {} in {}ms after {}", binding.getName(), delayMs, t.toString());
+        attempts++;
+        SharedScheduler.schedule(() -> {
+            // Spawned, since this is the scheduler thread
+            Thread parentThread = Thread.currentThread();
+            binding.engine.run(() -> again(parentThread), parentThread, timeBox, binding.getExecutorName());
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void again(Thread parentThread) {
+        if (binding.getOutput().isDone()) {
+            // Completed some other way, e.g. by a task method timeout
+            return;
+        }
+        Object rv;
+        try {
+            rv = binding.runAgain(parentThread);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        if (rv instanceof CompletableFuture) {
+            follow((CompletableFuture<T>) rv);
+        } else {
+            result.completeExceptionally(new InvalidTaskMethodException("Return value is not a CompletableFuture: " + rv));
+        }
+    }
+}
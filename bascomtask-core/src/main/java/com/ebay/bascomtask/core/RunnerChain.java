@@ -0,0 +1,139 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+/**
+ * Passes one task method execution through an array of TaskRunners, rather than requiring TaskRunners themselves
+ * to maintain that list. The same instance is passed to each TaskRunner in turn and keeps the index of the one
+ * currently executing, so only this one object is needed regardless of the number of TaskRunners.
+ *
+ * @author Brendan McCarthy
+ */
+class RunnerChain implements TaskRun {
+    private final TaskRunner[] runners;
+    private final Object[] fromBefore;
+    private final Thread parentThread;
+    private final Binding<?> binding;
+
+    // Index of the TaskRunner currently executing; only accessed by the thread executing the task method
+    private int position = 0;
+
+    /**
+     * Creates a chain and calls {@link TaskRunner#before(TaskRun)} on each of its TaskRunners, last to first.
+     *
+     * @param runners      non-empty array that will not be modified
+     * @param parentThread thread calling this constructor
+     * @param binding      whose task method is to be executed
+     */
+    RunnerChain(TaskRunner[] runners, Thread parentThread, Binding<?> binding) {
+        this.runners = runners;
+        this.fromBefore = new Object[runners.length];
+        this.parentThread = parentThread;
+        this.binding = binding;
+        for (int i = runners.length - 1; i >= 0; i--) {
+            fromBefore[i] = runners[i].before(this);
+        }
+    }
+
+    TaskRunner getFirstRunner() {
+        return runners[0];
+    }
+
+    Object getFirstFromBefore() {
+        return fromBefore[0];
+    }
+
+    @Override
+    public String toString() {
+        return "RunnerChain(" + binding + ")";
+    }
+
+    @Override
+    public String getName() {
+        return binding.getName();
+    }
+
+    @Override
+    public String getTaskPlusMethodName() {
+        return binding.getTaskPlusMethodName();
+    }
+
+    @Override
+    public void formatActualSignature(StringBuilder sb) {
+        binding.formatActualSignature(sb);
+    }
+
+    @Override
+    public boolean isLight() {
+        return binding.isLight();
+    }
+
+    @Override
+    public boolean isRunSpawned() {
+        return binding.isRunSpawned();
+    }
+
+    @Override
+    public String getExecutorName() {
+        return binding.getExecutorName();
+    }
+
+    @Override
+    public TaskInterface<?> getTask() {
+        return binding.getTask();
+    }
+
+    /**
+     * Called by each TaskRunner from its {@link TaskRunner#executeTaskMethod(TaskRun, Thread, Object)} in order
+     * to execute the next TaskRunner, or the task method itself after the last one. The position is restored on
+     * exit so that a TaskRunner can call this more than once. The first TaskRunner can also call this after its
+     * executeTaskMethod has returned, since the position is then back where it started.
+     *
+     * @return result from the next TaskRunner or the task method
+     */
+    @Override
+    public Object run() {
+        int level = position + 1;
+        if (level == runners.length) {
+            return binding.run();
+        }
+        position = level;
+        try {
+            TaskRunner next = runners[level];
+            Object rv = next.executeTaskMethod(this, parentThread, fromBefore[level]);
+            Binding.completeRunner(next, this, fromBefore[level], rv);
+            return rv;
+        } finally {
+            position = level - 1;
+        }
+    }
+
+    @Override
+    public long getStartedAt() {
+        return binding.getStartedAt();
+    }
+
+    @Override
+    public long getEndedAt() {
+        return binding.getEndedAt();
+    }
+
+    @Override
+    public long getCompletedAt() {
+        return binding.getCompletedAt();
+    }
+}
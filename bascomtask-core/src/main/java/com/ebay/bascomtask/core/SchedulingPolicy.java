@@ -0,0 +1,60 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+/**
+ * Decides, as each task method becomes ready to run, whether it is run in the current thread or in a spawned one.
+ * Each {@link SpawnMode} is a built-in policy; a custom policy can be set on an Orchestrator or globally through
+ * {@link CommonConfig#setSchedulingPolicy(SchedulingPolicy)}.
+ *
+ * <p>When several task methods become ready at once, for example when they all depend on a task method that has just
+ * completed, they are presented one at a time. At most one of them is held back as 'pending', to be run in the
+ * current thread once all the others have been dealt with. Implementations are called from many threads at once and
+ * should be fast and thread-safe.
+ *
+ * @author Brendan McCarthy
+ */
+public interface SchedulingPolicy {
+
+    enum Decision {
+        /**
+         * Run the task method in the current thread right away.
+         */
+        INLINE,
+
+        /**
+         * Run the task method in a spawned thread.
+         */
+        SPAWN,
+
+        /**
+         * Make the task method the pending one. The previously pending task method, if any, is spawned.
+         */
+        DEFER
+    }
+
+    /**
+     * Decides how to run a task method that is ready to run.
+     *
+     * @param taskRun      ready to run
+     * @param pending      task method currently held back to run in the current thread, possibly null
+     * @param orchestrator running the task method
+     * @param mainThread   true iff the current thread is the calling (not a spawned) thread
+     * @return non-null decision
+     */
+    Decision decide(TaskRun taskRun, TaskRun pending, Orchestrator orchestrator, boolean mainThread);
+}
@@ -0,0 +1,55 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single daemon thread, shared by all Orchestrators and created on first use, for running actions after a delay.
+ * Actions must be quick, handing off any real work such as running task methods to other threads.
+ *
+ * @author Brendan McCarthy
+ */
+class SharedScheduler {
+    private static volatile ScheduledThreadPoolExecutor executor = null;
+
+    static ScheduledFuture<?> schedule(Runnable action, long delay, TimeUnit timeUnit) {
+        return getExecutor().schedule(action, delay, timeUnit);
+    }
+
+    private static ScheduledThreadPoolExecutor getExecutor() {
+        ScheduledThreadPoolExecutor ex = executor;
+        if (ex == null) {
+            synchronized (SharedScheduler.class) {
+                ex = executor;
+                if (ex == null) {
+                    ex = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "BT-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    // Cancelled actions, e.g. for timeouts that were not reached, should not linger in the queue
+                    ex.setRemoveOnCancelPolicy(true);
+                    executor = ex;
+                }
+            }
+        }
+        return ex;
+    }
+}
@@ -0,0 +1,89 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.exceptions.TaskNotStartedException;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * JVM-wide registry of running executions of {@link com.ebay.bascomtask.annotations.SingleFlight} task methods,
+ * which later equivalent calls attach to rather than running the task method themselves. Attached calls share a
+ * result, or an exception from the task method, but not a failure that belongs to the request that started the
+ * execution, such as its timeout or its cancellation by a fate task. In that case each attached call starts over,
+ * so that one of them runs the task method for the rest.
+ *
+ * @author Brendan McCarthy
+ */
+class SingleFlightRegistry {
+    private static final ConcurrentMap<InvocationKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Attaches a ready binding to a running equivalent execution if there is one, else registers that binding's
+     * execution for others to attach to until it completes.
+     *
+     * @param binding to attach or register
+     * @param key     identifying equivalent executions
+     * @return true iff attached, in which case the binding must not be fired here
+     */
+    static boolean attach(Binding<?> binding, InvocationKey key) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            existing.whenComplete((v, t) -> {
+                if (t == null || isShared(t)) {
+                    binding.bindResult(existing);
+                } else if (!attach(binding, key)) {
+                    // Spawned, since this is a thread of the Orchestrator whose execution failed
+                    binding.fire("singleFlight", "restart", false);
+                }
+            });
+            return true;
+        }
+        binding.getOutput().whenComplete((v, t) -> {
+            // Removed first, so that calls from here on start a new execution
+            flights.remove(key, flight);
+            if (t == null) {
+                flight.complete(v);
+            } else {
+                flight.completeExceptionally(t);
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Returns true if an exception can be passed on to attached calls, i.e. it does not reflect the circumstances of
+     * the request that ran the task method. A task method that itself throws one of the excluded exceptions is
+     * simply run again by an attached call.
+     *
+     * @param t exception completing an execution
+     * @return true iff attached calls should complete with it
+     */
+    private static boolean isShared(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return !(cause instanceof TimeoutExceededException || cause instanceof TaskNotStartedException);
+    }
+
+    static int size() {
+        return flights.size();
+    }
+}
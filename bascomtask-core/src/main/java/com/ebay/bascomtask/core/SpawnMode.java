@@ -21,47 +21,93 @@ package com.ebay.bascomtask.core;
  *
  * @author Brendan McCarthy
  */
-public enum SpawnMode {
+public enum SpawnMode implements SchedulingPolicy {
     /**
      * Spawn whenever more than one task can be started at the same time. This is the default behavior.
      */
-    WHEN_NEEDED(true),
+    WHEN_NEEDED(true, true),
 
     /**
      * Like {@link #WHEN_NEEDED}, but avoids any attempt to reuse main thread for processing.
      * That 'reuse' occurs when the main thread is sitting idle with no work to do while
-     * spawned threads need themselves to spawn threads.
+     * spawned threads need themselves to spawn threads. Spawned threads that are waiting are still reused.
      */
-    WHEN_NEEDED_NO_REUSE(false),
+    WHEN_NEEDED_NO_REUSE(false, true),
 
     /**
      * Avoid using main (calling thread) to execute task methods, spawning threads instead,
      * unless the task methods are marked as 'light'. This keeps the calling thread free
      * for other purposes.
      */
-    NEVER_MAIN(false),
+    NEVER_MAIN(false, true),
 
     /**
      * Always spawn except for 'light' task methods. This is a stronger assertion then {@link #NEVER_MAIN},
      * as the main thread will similarly not execute any tasks. Every task will run in its own logical thread
      * (as in a pull from the thread pool, where physical threads may of course be reused).
      */
-    ALWAYS_SPAWN(false),
+    ALWAYS_SPAWN(false, false),
 
     /**
      * Never spawn under any circumstance. Every task will be run in the calling thread when activated.
      */
-    NEVER_SPAWN(false),
+    NEVER_SPAWN(false, false),
 
     /**
      * Don't spawn unless a {@link TaskInterface#runSpawned()} request is made on a task.
      */
-    DONT_SPAWN_UNLESS_EXPLICIT(true);
+    DONT_SPAWN_UNLESS_EXPLICIT(true, true),
+
+    /**
+     * Like {@link #WHEN_NEEDED}, but when more than one task can be started at the same time, the one
+     * heading the longest expected chain of downstream work is kept in the current thread and the others
+     * are spawned. Expectations are based on task method durations observed in earlier executions, so
+     * until a task method has run at least once this mode behaves the same as {@link #WHEN_NEEDED}.
+     */
+    CRITICAL_PATH(true, true);
 
     private final boolean mainThreadReusable;
+    private final boolean spawnedThreadReusable;
 
-    SpawnMode(boolean mainThreadReusable) {
+    SpawnMode(boolean mainThreadReusable, boolean spawnedThreadReusable) {
         this.mainThreadReusable = mainThreadReusable;
+        this.spawnedThreadReusable = spawnedThreadReusable;
+    }
+
+    @Override
+    public Decision decide(TaskRun taskRun, TaskRun pending, Orchestrator orchestrator, boolean mainThread) {
+        if (taskRun.isLight()) {
+            return Decision.INLINE;
+        }
+        switch (this) {
+            case NEVER_MAIN:
+                if (mainThread) {
+                    return Decision.SPAWN;
+                }
+                break;
+            case ALWAYS_SPAWN:
+                return Decision.SPAWN;
+            case NEVER_SPAWN:
+                return Decision.INLINE;
+        }
+        if (taskRun.isRunSpawned()) {
+            return Decision.SPAWN;
+        }
+        switch (this) {
+            case DONT_SPAWN_UNLESS_EXPLICIT:
+                return Decision.INLINE;
+            case CRITICAL_PATH:
+                if (pending != null && estimateCriticalPathNanos(pending) > estimateCriticalPathNanos(taskRun)) {
+                    // Keep the longer path as pending for the current thread
+                    return Decision.SPAWN;
+                }
+                break;
+        }
+        return Decision.DEFER;
+    }
+
+    private static long estimateCriticalPathNanos(TaskRun taskRun) {
+        return taskRun instanceof Binding ? ((Binding<?>) taskRun).estimateCriticalPathNanos() : 0;
     }
 
     /**
@@ -73,4 +119,15 @@ public enum SpawnMode {
     public boolean isMainThreadReusable() {
         return mainThreadReusable;
     }
+
+    /**
+     * Returns true if this mode allows for a spawned thread to be picked up while idle and otherwise waiting
+     * for a CompletableFuture to complete, such as when a task method blocks on the result of another task method,
+     * and used to process spawning task methods.
+     *
+     * @return true iff spawned threads are reusable
+     */
+    public boolean isSpawnedThreadReusable() {
+        return spawnedThreadReusable;
+    }
 }
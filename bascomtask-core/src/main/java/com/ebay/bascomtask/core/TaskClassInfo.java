@@ -0,0 +1,196 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Batchable;
+import com.ebay.bascomtask.annotations.Cacheable;
+import com.ebay.bascomtask.annotations.Hedged;
+import com.ebay.bascomtask.annotations.Retry;
+import com.ebay.bascomtask.annotations.Light;
+import com.ebay.bascomtask.annotations.RunOn;
+import com.ebay.bascomtask.annotations.SingleFlight;
+import com.ebay.bascomtask.annotations.Timeout;
+import com.ebay.bascomtask.exceptions.InvalidTaskException;
+import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Information about a user task class that is needed each time one of its instances is added to an Orchestrator or
+ * one of its task methods is called, determined through reflection only once per class and method.
+ *
+ * @author Brendan McCarthy
+ */
+final class TaskClassInfo {
+    private static final ClassValue<TaskClassInfo> REGISTRY = new ClassValue<TaskClassInfo>() {
+        @Override
+        protected TaskClassInfo computeValue(Class<?> type) {
+            return new TaskClassInfo(type);
+        }
+    };
+
+    private final Class<?> taskClass;
+    private final Class<?> taskInterface;
+    private final ConcurrentMap<Method, MethodInfo> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Annotation-derived settings for one task method, as found on the task class or its superclasses.
+     */
+    static final class MethodInfo {
+        final boolean light;
+        final RunOn runOn;
+        final Cacheable cacheable;
+        final boolean singleFlight;
+
+        // Zero if there is no timeout
+        final long timeoutMs;
+
+        // Non-null iff a slow call should be raced against a second one
+        final Hedged hedged;
+
+        // Non-null iff a failed call should be retried
+        final Retry retry;
+
+        // Both non-null iff calls to this task method may be combined with others
+        final Batchable batchable;
+        final Method batchMethod;
+
+        private MethodInfo(Class<?> taskClass, Method method) {
+            this.light = Utils.getAnnotation(taskClass, method, Light.class) != null;
+            this.runOn = Utils.getAnnotation(taskClass, method, RunOn.class);
+            this.cacheable = Utils.getAnnotation(taskClass, method, Cacheable.class);
+            this.singleFlight = Utils.getAnnotation(taskClass, method, SingleFlight.class) != null;
+            Timeout timeout = Utils.getAnnotation(taskClass, method, Timeout.class);
+            this.timeoutMs = timeout == null ? 0 : timeout.value();
+            this.hedged = Utils.getAnnotation(taskClass, method, Hedged.class);
+            this.retry = Utils.getAnnotation(taskClass, method, Retry.class);
+            this.batchable = Utils.getAnnotation(taskClass, method, Batchable.class);
+            this.batchMethod = batchable == null ? null : findBatchMethod(taskClass, method, batchable.value());
+        }
+    }
+
+    private TaskClassInfo(Class<?> taskClass) {
+        this.taskClass = taskClass;
+        this.taskInterface = extractTaskInterfaceFromClass(taskClass);
+    }
+
+    /**
+     * Returns the (cached) information for the given class.
+     *
+     * @param taskClass to look up
+     * @return non-null info
+     */
+    static TaskClassInfo of(Class<?> taskClass) {
+        return REGISTRY.get(taskClass);
+    }
+
+    /**
+     * Returns the interface through which tasks of this class are called.
+     *
+     * @param <BASE> task interface type
+     * @return interface that extends TaskInterface
+     * @throws InvalidTaskException if there is no such interface
+     */
+    @SuppressWarnings("unchecked")
+    <BASE> Class<BASE> getTaskInterface() {
+        if (taskInterface == null) {
+            // This should not happen because compiler restricts calls to those that
+            // implement interface TaskInterface
+            throw new InvalidTaskException("Task does not implement com.ebay.bascomtask.core.TaskInterface: "
+                    + taskClass.getName());
+        }
+        return (Class<BASE>) taskInterface;
+    }
+
+    /**
+     * Returns the (cached) settings for a task method of this class.
+     *
+     * @param method as called through the task interface
+     * @return non-null info
+     * @throws InvalidTaskMethodException if the annotations on the method are invalid
+     */
+    MethodInfo getMethodInfo(Method method) {
+        MethodInfo info = methods.get(method);
+        if (info == null) {
+            info = methods.computeIfAbsent(method, m -> new MethodInfo(taskClass, m));
+        }
+        return info;
+    }
+
+    /**
+     * Determines everything about this class ahead of its first use, including creating or finding the class
+     * that wraps its task interface.
+     */
+    void warmUp() {
+        Class<?> tc = getTaskInterface();
+        for (Method next : tc.getMethods()) {
+            TaskMethod taskMethod = TaskMethod.of(next);
+            taskMethod.warmUp();
+            if (taskMethod.kind == TaskMethod.Kind.TASK) {
+                getMethodInfo(next);
+            }
+        }
+        TaskProxies.warmUp(tc);
+    }
+
+    private static Method findBatchMethod(Class<?> taskClass, Method method, String name) {
+        if (method.getParameterCount() != 1) {
+            throw new InvalidTaskMethodException("@Batchable method must have exactly one parameter: " + method);
+        }
+        Method batchMethod;
+        try {
+            batchMethod = taskClass.getMethod(name, List.class);
+        } catch (NoSuchMethodException e) {
+            throw new InvalidTaskMethodException("@Batchable method " + method.getName() + " requires method "
+                    + name + "(List) on " + taskClass.getName());
+        }
+        if (!CompletableFuture.class.isAssignableFrom(batchMethod.getReturnType())) {
+            throw new InvalidTaskMethodException("Batch method must return a CompletableFuture: " + batchMethod);
+        }
+        return batchMethod;
+    }
+
+    private static Class<?> extractTaskInterfaceFromClass(Class<?> clazz) {
+        Type[] types = clazz.getGenericInterfaces();
+        for (Type nextType : types) {
+            if (nextType instanceof ParameterizedType) {
+                ParameterizedType type = (ParameterizedType) nextType;
+                nextType = type.getRawType();
+            }
+            Class<?> classBase = (Class<?>) nextType;
+            if (nextType.equals(TaskInterface.class)) {
+                return classBase;
+            }
+            Class<?> xs = extractTaskInterfaceFromClass(classBase);
+            if (xs != null) {
+                return classBase;  // Return interface that extends TaskInterface
+            }
+        }
+
+        Class<?> sc = clazz.getSuperclass();
+        if (sc != null) {
+            return extractTaskInterfaceFromClass(sc);
+        }
+        return null;
+    }
+}
@@ -136,6 +136,62 @@ public interface TaskInterface<T> {
         return false;
     }
 
+    /**
+     * Forces a new thread to be allocated for task methods on this class, drawn from the ExecutorService
+     * registered under the given name with {@link CommonConfig#setExecutorService(String, java.util.concurrent.ExecutorService)}
+     * rather than from the default one. If no ExecutorService is registered under that name, the default one is used.
+     *
+     * TaskWrappers (as returned by {@link Orchestrator#task(TaskInterface)}, already support this method which
+     * therefore works in expressions like {@code $.task(myTask).runOn("io").myMethod()}.
+     * That is the typical usage, so there is normally no need to override this method.
+     *
+     * <p>Like {@link #runSpawned()}, this call reverses any previous call to {@link #light()}, and is reversed by a
+     * subsequent one. It takes precedence over a {@link com.ebay.bascomtask.annotations.RunOn} annotation on a task
+     * method.
+     *
+     * @param executorName name of ExecutorService to spawn on
+     * @return this
+     */
+    default T runOn(String executorName) {
+        throw new MisplacedTaskMethodException(this,"runOn");
+    }
+
+    /**
+     * Indicates the ExecutorService that task methods should be spawned on by default.
+     *
+     * @return name of ExecutorService, or null for the default one
+     */
+    default String getRunOn() {
+        return null;
+    }
+
+    /**
+     * Limits how long task methods on this object may take, as described for the
+     * {@link com.ebay.bascomtask.annotations.Timeout} annotation.
+     *
+     * TaskWrappers (as returned by {@link Orchestrator#task(TaskInterface)}, already support this method which
+     * therefore works in expressions like {@code $.task(myTask).timeoutMs(50).myMethod()}.
+     * That is the typical usage, so there is normally no need to override this method.
+     *
+     * <p>This call takes precedence over a {@link com.ebay.bascomtask.annotations.Timeout} annotation on a task
+     * method.
+     *
+     * @param ms maximum duration in milliseconds, or zero for none
+     * @return this
+     */
+    default T timeoutMs(long ms) {
+        throw new MisplacedTaskMethodException(this,"timeoutMs");
+    }
+
+    /**
+     * Indicates the default limit on how long task methods may take.
+     *
+     * @return maximum duration in milliseconds, or zero for none
+     */
+    default long getTimeoutMs() {
+        return 0;
+    }
+
     /**
      * Forces immediate activation of task methods instead of the default behavior which is that task methods
      * are only lazily activated according to the rules described in {@link Orchestrator#task(TaskInterface)}.
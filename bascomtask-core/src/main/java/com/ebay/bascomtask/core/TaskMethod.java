@@ -0,0 +1,280 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-method information needed on each call through a task proxy or to a task method, computed once per Method
+ * rather than on every call. This includes how {@link TaskWrapper} should handle a call, and an invoker for
+ * calling the method on a user POJO task without the overhead of reflective invocation. Public only so that
+ * subclasses of {@link GeneratedTaskProxy} can hold instances in constants, and so that the nested invoker
+ * interfaces can be implemented from the class loader of a task interface; applications should not use them.
+ *
+ * <p>Where possible the invoker is generated with {@link LambdaMetafactory}, which compiles to a direct interface
+ * call on the task. That needs a full-privilege lookup in the class declaring the method, which is only available
+ * from Java 9, and a non-void method with at most {@link #MAX_INVOKER_ARITY} parameters. Otherwise the method is invoked
+ * through a spreading MethodHandle, which works for any method and any accessibility.
+ *
+ * @author Brendan McCarthy
+ */
+public final class TaskMethod {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * Largest number of method parameters for which an invoker interface is defined.
+     */
+    static final int MAX_INVOKER_ARITY = 4;
+
+    /**
+     * MethodHandles.privateLookupIn, which is only present from Java 9.
+     */
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    /**
+     * Registry keyed by the class declaring each Method, so that entries do not keep classes from being unloaded.
+     */
+    private static final ClassValue<ConcurrentMap<Method, TaskMethod>> REGISTRY =
+            new ClassValue<ConcurrentMap<Method, TaskMethod>>() {
+                @Override
+                protected ConcurrentMap<Method, TaskMethod> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * How a call through a task proxy is to be handled.
+     */
+    enum Kind {
+        HASH_CODE, EQUALS, TO_STRING,
+        // TaskInterface wiring methods
+        NAME, GET_NAME, LIGHT, RUN_SPAWNED, RUN_ON, ACTIVATE, TIMEOUT_MS,
+        // Invoked immediately since not returning a CompletableFuture
+        DIRECT,
+        // Returns a placeholder CompletableFuture, invoked later
+        TASK
+    }
+
+    public interface Invoker0 {
+        Object invoke(Object target) throws Throwable;
+    }
+
+    public interface Invoker1 {
+        Object invoke(Object target, Object a0) throws Throwable;
+    }
+
+    public interface Invoker2 {
+        Object invoke(Object target, Object a0, Object a1) throws Throwable;
+    }
+
+    public interface Invoker3 {
+        Object invoke(Object target, Object a0, Object a1, Object a2) throws Throwable;
+    }
+
+    public interface Invoker4 {
+        Object invoke(Object target, Object a0, Object a1, Object a2, Object a3) throws Throwable;
+    }
+
+    private static final Class<?>[] INVOKER_TYPES = {
+            Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class, Invoker4.class};
+
+    final Kind kind;
+    private final Method method;
+    private final int arity;
+    // One of the InvokerN types when generated, else a MethodHandle from createHandle
+    private volatile Object invoker = null;
+
+    private TaskMethod(Method method) {
+        this.method = method;
+        this.kind = kindOf(method);
+        this.arity = method.getParameterCount();
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the (cached) TaskMethod for the given method.
+     *
+     * @param method to look up
+     * @return non-null TaskMethod
+     */
+    static TaskMethod of(Method method) {
+        ConcurrentMap<Method, TaskMethod> map = REGISTRY.get(method.getDeclaringClass());
+        TaskMethod taskMethod = map.get(method);
+        if (taskMethod == null) {
+            taskMethod = map.computeIfAbsent(method, TaskMethod::new);
+        }
+        return taskMethod;
+    }
+
+    private static Kind kindOf(Method method) {
+        switch (method.getName()) {
+            case "hashCode":
+                return Kind.HASH_CODE;
+            case "equals":
+                return Kind.EQUALS;
+            case "toString":
+                return Kind.TO_STRING;
+            case "name":
+                return Kind.NAME;
+            case "getName":
+                return Kind.GET_NAME;
+            case "light":
+                return Kind.LIGHT;
+            case "runSpawned":
+                return Kind.RUN_SPAWNED;
+            case "runOn":
+                return Kind.RUN_ON;
+            case "activate":
+                return Kind.ACTIVATE;
+            case "timeoutMs":
+                return Kind.TIMEOUT_MS;
+            default:
+                Class<?> rt = method.getReturnType();
+                if (rt.equals(Void.TYPE) || !CompletableFuture.class.isAssignableFrom(rt)) {
+                    return Kind.DIRECT;
+                }
+                return Kind.TASK;
+        }
+    }
+
+    private static Method findPrivateLookupIn() {
+        try {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates an implementation of the InvokerN interface matching the method's parameter count, or returns
+     * null if that is not possible, e.g. because the declaring class is in a different module that is not open
+     * to this one.
+     */
+    private static Object createInvoker(Method method) {
+        int arity = method.getParameterCount();
+        // A void method cannot implement an interface method that returns Object
+        if (PRIVATE_LOOKUP_IN == null || arity > MAX_INVOKER_ARITY || method.getReturnType() == Void.TYPE) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(
+                    null, method.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle impl = lookup.unreflect(method);
+            Class<?> invokerType = INVOKER_TYPES[arity];
+            MethodType instantiated = impl.type().wrap().changeReturnType(Object.class);
+            return LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(invokerType),
+                    instantiated.erase(), impl, instantiated).getTarget().invoke();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a handle that takes the target and an array of arguments and returns an Object, the same shape
+     * as {@link Method#invoke(Object, Object...)}, so that a single invokeExact call site serves all methods.
+     */
+    private static MethodHandle createHandle(Method method) {
+        // Don't require public access, especially because of poor JVM exception messages, e.g. failure to make
+        // an interface public, when BT accessed as a library, can otherwise result in
+        // IllegalAccessException ... cannot access a member of interface ... with modifiers "public abstract"
+        method.setAccessible(true);
+        try {
+            MethodHandle mh = MethodHandles.lookup().unreflect(method).asFixedArity();
+            mh = mh.asType(mh.type().generic());
+            return mh.asSpreader(Object[].class, method.getParameterCount());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Unable to access method " + method, e);
+        }
+    }
+
+    private Object getInvoker() {
+        Object inv = invoker;
+        if (inv == null) {
+            // Benign race: concurrent callers may each create an equivalent invoker
+            inv = createInvoker(method);
+            if (inv == null) {
+                inv = createHandle(method);
+            }
+            invoker = inv;
+        }
+        return inv;
+    }
+
+    /**
+     * Creates the invoker for this method ahead of its first use.
+     */
+    void warmUp() {
+        if (kind == Kind.DIRECT || kind == Kind.TASK) {
+            getInvoker();
+        }
+    }
+
+    /**
+     * Invokes a method, passing through anything it throws.
+     *
+     * @param target to invoke on
+     * @param args   to pass, possibly null if there are none
+     * @return result of invocation
+     * @throws Throwable whatever the method throws
+     */
+    Object invokeExact(Object target, Object[] args) throws Throwable {
+        Object inv = getInvoker();
+        if (inv instanceof MethodHandle) {
+            Object[] actualArgs = args == null ? NO_ARGS : args;  // Local ensures the exact call site type
+            return (Object) ((MethodHandle) inv).invokeExact(target, actualArgs);
+        }
+        switch (arity) {
+            case 0:
+                return ((Invoker0) inv).invoke(target);
+            case 1:
+                return ((Invoker1) inv).invoke(target, args[0]);
+            case 2:
+                return ((Invoker2) inv).invoke(target, args[0], args[1]);
+            case 3:
+                return ((Invoker3) inv).invoke(target, args[0], args[1], args[2]);
+            default:
+                return ((Invoker4) inv).invoke(target, args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    /**
+     * Invokes a method, rethrowing any exception it throws as a RuntimeException.
+     *
+     * @param target to invoke on
+     * @param args   to pass, possibly null if there are none
+     * @return result of invocation
+     */
+    Object invoke(Object target, Object[] args) {
+        try {
+            return invokeExact(target, args);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable actual) {
+            throw new RuntimeException(actual);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Creates the wrapper for a task interface, using a {@link TaskProxyFactory} generated at compile time if one is
+ * available for that interface, else a {@link java.lang.reflect.Proxy}.
+ *
+ * @author Brendan McCarthy
+ */
+final class TaskProxies {
+    private static final Logger LOG = LoggerFactory.getLogger(TaskProxies.class);
+
+    private static final TaskProxyFactory NONE = new TaskProxyFactory() {
+        @Override
+        public Class<?> getTaskInterface() {
+            return null;
+        }
+
+        @Override
+        public GeneratedTaskProxy newProxy(InvocationHandler handler) {
+            return null;
+        }
+    };
+
+    private static final ClassValue<TaskProxyFactory> FACTORIES = new ClassValue<TaskProxyFactory>() {
+        @Override
+        protected TaskProxyFactory computeValue(Class<?> type) {
+            return findFactory(type);
+        }
+    };
+
+    private TaskProxies() {
+    }
+
+    private static TaskProxyFactory findFactory(Class<?> taskInterface) {
+        ServiceLoader<TaskProxyFactory> loader = ServiceLoader.load(TaskProxyFactory.class, taskInterface.getClassLoader());
+        Iterator<TaskProxyFactory> it = loader.iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) {
+                    return NONE;
+                }
+                TaskProxyFactory factory = it.next();
+                if (factory.getTaskInterface() == taskInterface) {
+                    return factory;
+                }
+            } catch (ServiceConfigurationError e) {
+                // Typically left over from a stale build; the reflective Proxy still works
+                LOG.warn("Ignoring TaskProxyFactory: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given object is a wrapper created by this class.
+     *
+     * @param object to check
+     * @return true iff a wrapper
+     */
+    static boolean isProxy(Object object) {
+        return object instanceof GeneratedTaskProxy || object instanceof Proxy;
+    }
+
+    /**
+     * Finds or creates the class of wrappers for the given task interface ahead of its first use.
+     *
+     * @param taskInterface to prepare for
+     */
+    static void warmUp(Class<?> taskInterface) {
+        if (FACTORIES.get(taskInterface) == NONE) {
+            // The JVM caches proxy classes, so creating an instance is enough to avoid doing so on first use
+            Proxy.newProxyInstance(taskInterface.getClassLoader(), new Class[]{taskInterface}, (p, m, a) -> null);
+        }
+    }
+
+    /**
+     * Creates a wrapper for a task interface that forwards all calls to a handler.
+     *
+     * @param taskInterface to implement
+     * @param handler       to forward calls to
+     * @return new wrapper
+     */
+    static Object newProxy(Class<?> taskInterface, InvocationHandler handler) {
+        TaskProxyFactory factory = FACTORIES.get(taskInterface);
+        if (factory != NONE) {
+            return factory.newProxy(handler);
+        }
+        return Proxy.newProxyInstance(taskInterface.getClassLoader(), new Class[]{taskInterface}, handler);
+    }
+}
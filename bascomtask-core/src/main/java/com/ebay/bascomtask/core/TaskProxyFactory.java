@@ -0,0 +1,46 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import java.lang.reflect.InvocationHandler;
+
+/**
+ * Creates wrappers for one task interface, as an alternative to the {@link java.lang.reflect.Proxy} otherwise
+ * created by {@link Orchestrator#task(TaskInterface)}. Implementations are generated at compile time by the
+ * bascomtask-processor annotation processor and are discovered through {@link java.util.ServiceLoader}, so
+ * they are not normally written by hand.
+ *
+ * @author Brendan McCarthy
+ */
+public interface TaskProxyFactory {
+
+    /**
+     * Returns the task interface that this factory creates wrappers for.
+     *
+     * @return interface class
+     */
+    Class<?> getTaskInterface();
+
+    /**
+     * Creates a wrapper that implements {@link #getTaskInterface()} and behaves as a {@link java.lang.reflect.Proxy}
+     * given the same handler would.
+     *
+     * @param handler created by the framework for the task being wrapped
+     * @return new wrapper, which must be a subclass of {@link GeneratedTaskProxy}
+     */
+    GeneratedTaskProxy newProxy(InvocationHandler handler);
+}
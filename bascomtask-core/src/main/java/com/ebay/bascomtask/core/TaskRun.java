@@ -50,6 +50,27 @@ public interface TaskRun extends TaskMeta {
      */
     boolean isLight();
 
+    /**
+     * Indicates whether a spawned thread has been explicitly requested for the task method.
+     *
+     * @return true iff this task method should be spawned
+     * @see TaskInterface#runSpawned()
+     */
+    default boolean isRunSpawned() {
+        return false;
+    }
+
+    /**
+     * Returns the name of the ExecutorService the task method is to be spawned on, if not the default one.
+     *
+     * @return possibly null name
+     * @see com.ebay.bascomtask.annotations.RunOn
+     * @see TaskInterface#runOn(String)
+     */
+    default String getExecutorName() {
+        return null;
+    }
+
     /**
      * Invokes the task method. This should be called from {@link TaskRunner#executeTaskMethod(TaskRun, Thread, Object)},
      * and the result of this call should be returned from that method.
@@ -26,6 +26,7 @@ package com.ebay.bascomtask.core;
  * @see com.ebay.bascomtask.runners.LogTaskRunner
  * @see com.ebay.bascomtask.runners.StatTaskRunner
  * @see com.ebay.bascomtask.runners.ProfilingTaskRunner
+ * @see com.ebay.bascomtask.runners.CircuitBreakerTaskRunner
  */
 public interface TaskRunner {
 
@@ -42,7 +43,9 @@ public interface TaskRunner {
     /**
      * Task invocation -- an implementation should invoke {@link com.ebay.bascomtask.core.TaskRun#run()}
      * to complete the invocation (unless there is some reason to prevent it, but then the implementation
-     * must take responsibility to ensure the all CompletableFuture return values are completed). A typical
+     * must take responsibility to ensure the all CompletableFuture return values are completed). TaskRun.run()
+     * may be called more than once, for example to retry a failed invocation. Only the first TaskRunner of an
+     * Orchestrator may call it after this method has returned or from another thread. A typical
      * subclass implementation would be to simply surround the call, e.g.:
      * <pre>
      *     public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
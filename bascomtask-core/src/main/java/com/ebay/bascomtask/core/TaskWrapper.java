@@ -17,9 +17,8 @@
 package com.ebay.bascomtask.core;
 
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.concurrent.CompletableFuture;
+import java.util.Arrays;
 
 /**
  * Wraps user POJO tasks and is returned by calls to {@link Orchestrator#task(TaskInterface)}. Propagates task method
@@ -36,7 +35,9 @@ class TaskWrapper<T> implements InvocationHandler {
     private String name = null;
     private boolean light;
     private boolean runSpawned;
+    private String runOn;
     private boolean activate;
+    private long timeoutMs;
 
     // Marks explicit wiring calls to runSpawned, necessary in order to keep the priorities consistent among
     // the several ways that affect method weight;
@@ -47,8 +48,10 @@ class TaskWrapper<T> implements InvocationHandler {
         this.original = original;
         this.target = target;
         this.light = target.isLight();
-        this.runSpawned = target.isRunSpawned();
+        this.runOn = target.getRunOn();
+        this.runSpawned = target.isRunSpawned() || runOn != null;
         this.activate = target.isActivate();
+        this.timeoutMs = target.getTimeoutMs();
     }
 
     public String getName() {
@@ -64,6 +67,10 @@ class TaskWrapper<T> implements InvocationHandler {
         return runSpawned;
     }
 
+    public String getRunOn() {
+        return runOn;
+    }
+
     boolean explicitRunSpawn() {
         return explicitRunSpawn;
     }
@@ -72,56 +79,99 @@ class TaskWrapper<T> implements InvocationHandler {
         return activate;
     }
 
-    public Object invoke(Object proxy, Method method, Object[] args)
-            throws IllegalAccessException, IllegalArgumentException,
-            InvocationTargetException {
-        String nm = method.getName();
-        switch (nm) {
-            case "hashCode":
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    T getOriginal() {
+        return original;
+    }
+
+    /**
+     * Returns the wiring settings that affect how a task method call executes, so that memoized calls only share
+     * a result when they would execute in the same way. The name is excluded since it does not affect execution.
+     *
+     * @return value that is equal for equal settings
+     */
+    private Object getWiringSettings() {
+        return Arrays.asList(light, runSpawned, explicitRunSpawn, runOn, timeoutMs);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return invoke(proxy, TaskMethod.of(method), args);
+    }
+
+    /**
+     * Handles a call through either a {@link java.lang.reflect.Proxy} or a {@link GeneratedTaskProxy}.
+     *
+     * @param proxy      called
+     * @param taskMethod called
+     * @param args       passed, or null if there are none
+     * @return result of call
+     * @throws Throwable whatever the called method throws
+     */
+    Object invoke(Object proxy, TaskMethod taskMethod, Object[] args) throws Throwable {
+        switch (taskMethod.kind) {
+            case HASH_CODE:
                 return original.hashCode();
-            case "equals":
+            case EQUALS:
                 return this == args[0];
-            case "toString":
+            case TO_STRING:
                 return "TaskWrapper[" + original + "]";
+            case NAME:
+                name = args[0].toString();
+                return proxy;
+            case GET_NAME:
+                return getName();
+            case LIGHT:
+                this.runSpawned = false;
+                this.runOn = null;
+                this.light = true;
+                return proxy;
+            case RUN_SPAWNED:
+                this.light = false;
+                this.runSpawned = true;
+                this.explicitRunSpawn = true;
+                return proxy;
+            case RUN_ON:
+                this.light = false;
+                this.runSpawned = true;
+                this.runOn = (String) args[0];
+                this.explicitRunSpawn = true;
+                return proxy;
+            case ACTIVATE:
+                this.activate = true;
+                return proxy;
+            case TIMEOUT_MS:
+                this.timeoutMs = (Long) args[0];
+                return proxy;
+            case DIRECT:
+                // Execute immediately if not returning a CompletableFuture
+                return taskMethod.invokeExact(original, args);
             default:
-                return fakeTaskMethod(proxy, method, args, nm);
+                return fakeTaskMethod(taskMethod, args);
         }
     }
 
-    private Object fakeTaskMethod(Object proxy, Method method, Object[] args, String targetMethodName)
-            throws IllegalAccessException, IllegalArgumentException,
-            InvocationTargetException {
-
-        if ("name".equals(targetMethodName)) {
-            name = args[0].toString();
-            return proxy;
-        } else if ("getName".equals(targetMethodName)) {
-            return getName();
-        } else if ("light".equals(targetMethodName)) {
-            this.runSpawned = false;
-            this.light = true;
-            return proxy;
-        } else if ("runSpawned".equals(targetMethodName)) {
-            this.light = false;
-            this.runSpawned = true;
-            this.explicitRunSpawn = true;
-            return proxy;
-        } else if ("activate".equals(targetMethodName)) {
-            this.activate = true;
-            return proxy;
-        }
-
-        if (method.getReturnType().equals(Void.TYPE) || !CompletableFuture.class.isAssignableFrom(method.getReturnType())) {
-            // Execute immediately if not returning a CompletableFuture
-            return method.invoke(original, args);
+    /**
+     * Returns a placeholder non-activated CompletableFuture for a task method call.
+     *
+     * @param taskMethod called, which must return a CompletableFuture
+     * @param args       passed, or null if there are none
+     * @return placeholder
+     */
+    BascomTaskFuture<?> fakeTaskMethod(TaskMethod taskMethod, Object[] args) {
+        BascomTaskFuture<?> bascomTaskFuture;
+        if (engine.isMemoizing()) {
+            InvocationKey key = new InvocationKey(original, taskMethod.getMethod(), args, getWiringSettings());
+            bascomTaskFuture = engine.memoize(key, () -> new ReflectionBinding<>(engine, this, original, taskMethod, args));
         } else {
-            // Else return a placeholder non-activated CompletableFuture
-            Binding<T> binding = new ReflectionBinding<>(engine, this, original, method, args);
-            BascomTaskFuture<?> bascomTaskFuture = binding.getOutput();
-            if (activate) {
-                engine.executeAndReuseUntilReady(bascomTaskFuture);
-            }
-            return bascomTaskFuture;
+            Binding<T> binding = new ReflectionBinding<>(engine, this, original, taskMethod, args);
+            bascomTaskFuture = binding.getOutput();
+        }
+        if (activate && !engine.isRecording()) {  // A GraphTemplate activates it on each instantiation instead
+            engine.executeAndReuseUntilReady(bascomTaskFuture);
         }
+        return bascomTaskFuture;
     }
 }
@@ -22,6 +22,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Records user-requested timeout durations and detects when that timeout has been exceeded.
@@ -44,6 +46,11 @@ class TimeBox {
     // Records threads to be interrupted, when the TimeoutStrategy in effect calls for interrupts
     private List<Thread> activeThreeads = null;
 
+    // Set when the TimeoutStrategy calls for interrupts on timeout; the monitor is a pending interrupt of
+    // registered threads, which is only scheduled while there are registered threads
+    private boolean monitoring = false;
+    private ScheduledFuture<?> monitor = null;
+
     /**
      * A timeBudget of zero means no timeout check will later be made.
      *
@@ -54,17 +61,45 @@ class TimeBox {
         this.start = System.currentTimeMillis();
     }
 
+    /**
+     * Creates a TimeBox that ends no later than an enclosing one, so that work started on behalf of a task method
+     * does not outlast the time that task method has.
+     *
+     * @param timeoutMs requested timeout, zero or less for none
+     * @param enclosing possibly null TimeBox to stay within
+     * @return TimeBox with the earlier of the two deadlines
+     */
+    static TimeBox within(long timeoutMs, TimeBox enclosing) {
+        if (enclosing != null && enclosing.timeBudget > 0) {
+            // At least 1 since zero would mean no timeout at all
+            long remaining = Math.max(1, enclosing.getRemainingMs());
+            if (timeoutMs <= 0 || remaining < timeoutMs) {
+                timeoutMs = remaining;
+            }
+        }
+        return timeoutMs <= 0 ? NO_TIMEOUT : new TimeBox(timeoutMs);
+    }
+
     @Override
     public String toString() {
         if (timeBudget == 0) {
             return "TimeBox(0)";
         } else {
-            long left = (start + timeBudget) - System.currentTimeMillis();
+            long left = getRemainingMs();
             String msg = isTimedOut() ? "EXCEEDED" : (left + "ms left");
             return "TimeBox(" + start + "," + timeBudget + ',' + msg + ')';
         }
     }
 
+    /**
+     * Returns how much of the timeBudget is left, which is only meaningful if there is a timeBudget.
+     *
+     * @return milliseconds, zero or less if timed out
+     */
+    long getRemainingMs() {
+        return (start + timeBudget) - System.currentTimeMillis();
+    }
+
     private boolean isTimedOut() {
         // Apply gt here rather than gte since in some spawnmodes we get to this point very quickly
         return System.currentTimeMillis() > start + timeBudget;
@@ -94,14 +129,12 @@ class TimeBox {
     void interruptRegisteredThreads() {
         synchronized (this) {
             if (activeThreeads != null) {
-                int count = activeThreeads.size() - 1;  // Exclude current thread
-                if (count > 0) {
-                    String msg = " on timeout " + timeBudget + " exceeded";
-                    for (Thread next : activeThreeads) {
-                        if (next != Thread.currentThread()) {
-                            LOG.debug("Interrupting " + next.getName() + msg);
-                            next.interrupt();
-                        }
+                // The current thread is excluded, but it need not be registered (e.g. a monitoring thread)
+                String msg = " on timeout " + timeBudget + " exceeded";
+                for (Thread next : activeThreeads) {
+                    if (next != Thread.currentThread()) {
+                        LOG.debug("Interrupting " + next.getName() + msg);
+                        next.interrupt();
                     }
                 }
             }
@@ -120,40 +153,46 @@ class TimeBox {
                     activeThreeads = new ArrayList<>();
                 }
                 activeThreeads.add(Thread.currentThread());
+                if (monitoring && monitor == null) {
+                    scheduleMonitor();
+                }
             }
         }
     }
 
     /**
-     * De-registers current thead and ensures monitoring thread, if present is notified if there are no
-     * more registered threads. This call must follow every {@link #register(Orchestrator)} call.
+     * De-registers current thead and cancels any pending interrupt if there are no more registered threads; a
+     * later {@link #register(Orchestrator)} schedules it again.
+     * This call must follow every {@link #register(Orchestrator)} call.
      */
     synchronized void deregister() {
         if (activeThreeads != null) {
             activeThreeads.remove(Thread.currentThread());
-            if (activeThreeads.size() == 0) {
-                notify();
+            if (activeThreeads.size() == 0 && monitor != null) {
+                monitor.cancel(false);
+                monitor = null;
             }
         }
     }
 
     /**
-     * Sets up a monitoring thread if needed.
+     * Arranges for registered threads to be interrupted when the timeout is reached, if the TimeoutStrategy calls
+     * for that. This is done by the {@link SharedScheduler}, so no thread is occupied while waiting.
      *
      * @param orchestrator context
      */
     void monitorIfNeeded(Orchestrator orchestrator) {
-        if (orchestrator.getTimeoutStrategy() == TimeoutStrategy.INTERRUPT_IMMEDIATELY) {
-            orchestrator.getExecutorService().execute(() -> {
-                synchronized (this) {
-                    try {
-                        wait(timeBudget);
-                        interruptRegisteredThreads();
-                    } catch (InterruptedException ignore) {
-                        // do nothing
-                    }
+        if (timeBudget > 0 && orchestrator.getTimeoutStrategy() == TimeoutStrategy.INTERRUPT_IMMEDIATELY) {
+            synchronized (this) {
+                monitoring = true;
+                if (monitor == null && activeThreeads != null && activeThreeads.size() > 0) {
+                    scheduleMonitor();
                 }
-            });
+            }
         }
     }
+
+    private void scheduleMonitor() {
+        monitor = SharedScheduler.schedule(this::interruptRegisteredThreads, Math.max(0, getRemainingMs()), TimeUnit.MILLISECONDS);
+    }
 }
@@ -27,20 +27,20 @@ import java.util.concurrent.CompletableFuture;
  */
 class Utils {
     static <T extends Annotation> T getAnnotation(Object x, Method method, Class<T> annotationType) {
-        if (x != null) {
-            Class<?> clazz = x.getClass();
-            try {
-                return getAnnotation(clazz, method, annotationType);
-            } catch (NoSuchMethodException e) {
-                return null;
-            } catch (Exception e) {
-                throw new RuntimeException("Unable to read annotations", e);
-            }
+        return x == null ? null : getAnnotation(x.getClass(), method, annotationType);
+    }
+
+    static <T extends Annotation> T getAnnotation(Class<?> clazz, Method method, Class<T> annotationType) {
+        try {
+            return findAnnotation(clazz, method, annotationType);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to read annotations", e);
         }
-        return null;
     }
 
-    private static <T extends Annotation> T getAnnotation(Class<?> clazz, Method method, Class<T> annotationType) throws NoSuchMethodException {
+    private static <T extends Annotation> T findAnnotation(Class<?> clazz, Method method, Class<T> annotationType) throws NoSuchMethodException {
         if (clazz != null) {
             Method localMethod = clazz.getMethod(method.getName(), method.getParameterTypes());
             T result = localMethod.getAnnotation(annotationType);
@@ -48,7 +48,7 @@ class Utils {
                 return result;
             } else {
                 Class<?> superclass = clazz.getSuperclass();
-                return getAnnotation(superclass, method, annotationType);
+                return findAnnotation(superclass, method, annotationType);
             }
         }
         return null;
@@ -0,0 +1,33 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.exceptions;
+
+/**
+ * When an activation with a timeout is rejected without starting any tasks, because admission control predicts
+ * that the timeout would be exceeded. It extends {@link TimeoutExceededException} so that code which already
+ * handles timeouts, for example by returning a degraded response, handles rejections the same way.
+ *
+ * @author Brendan McCarthy
+ * @see com.ebay.bascomtask.core.CommonConfig#setAdmissionControl(boolean)
+ */
+public class AdmissionRejectedException extends TimeoutExceededException {
+    private static final long serialVersionUID = 1L;
+
+    public AdmissionRejectedException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,31 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.exceptions;
+
+/**
+ * When a task method is not called because a {@link com.ebay.bascomtask.runners.CircuitBreakerTaskRunner} has
+ * found too many recent calls to it to have failed or been slow, and no fallback is configured.
+ *
+ * @author Brendan McCarthy
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,266 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.runners;
+
+import com.ebay.bascomtask.core.TaskRun;
+import com.ebay.bascomtask.core.TaskRunner;
+import com.ebay.bascomtask.exceptions.CircuitBreakerOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Stops calling task methods that are failing or slow, so that a dead dependency does not hold threads or use up
+ * the time allowed for a request. Calls are tracked separately for each {@link TaskRun#getTaskPlusMethodName()}.
+ * When the proportion of recent calls that failed, or that completed more slowly than a configured duration, reaches
+ * a threshold, the breaker for that task method opens. While it is open, calls are not made; instead a fallback
+ * CompletableFuture is returned if one is configured, else a {@link CircuitBreakerOpenException} is thrown. Once the
+ * breaker has been open for a configured duration, a single trial call is let through, which closes the breaker if
+ * it succeeds and reopens it otherwise.
+ *
+ * <p>Counts are kept with atomic variables rather than locks, so that breakers are not a point of contention
+ * for concurrent calls.
+ *
+ * @author Brendan McCarthy
+ */
+public class CircuitBreakerTaskRunner implements TaskRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakerTaskRunner.class);
+
+    /**
+     * The state of the breaker for one task method.
+     */
+    public enum State {
+        // Calls are made
+        CLOSED,
+        // Calls are not made
+        OPEN,
+        // A trial call has been made, and its outcome determines the next state
+        HALF_OPEN
+    }
+
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private volatile double failureRateThreshold = 0.5;
+    private volatile long slowCallMs = 0;
+    private volatile double slowCallRateThreshold = 1.0;
+    private volatile int minimumCalls = 10;
+    private volatile long windowMs = 10000;
+    private volatile long openMs = 5000;
+    private volatile Function<TaskRun, CompletableFuture<?>> fallback = null;
+
+    /**
+     * Sets the proportion of calls that must fail to open a breaker. The default is 0.5.
+     *
+     * @param threshold between 0 and 1
+     */
+    public void setFailureRateThreshold(double threshold) {
+        this.failureRateThreshold = threshold;
+    }
+
+    /**
+     * Sets the duration beyond which a call is considered slow, whether or not it succeeds. The default is zero,
+     * which means that no call is considered slow.
+     *
+     * @param ms duration in milliseconds
+     */
+    public void setSlowCallMs(long ms) {
+        this.slowCallMs = ms;
+    }
+
+    /**
+     * Sets the proportion of calls that must be slow to open a breaker. The default is 1.
+     *
+     * @param threshold between 0 and 1
+     */
+    public void setSlowCallRateThreshold(double threshold) {
+        this.slowCallRateThreshold = threshold;
+    }
+
+    /**
+     * Sets the number of calls that must have completed within the current window before a breaker can open.
+     * The default is 10.
+     *
+     * @param calls minimum number of calls
+     */
+    public void setMinimumCalls(int calls) {
+        this.minimumCalls = calls;
+    }
+
+    /**
+     * Sets the duration over which calls are counted. Counts start again from zero once it has passed.
+     * The default is 10 seconds.
+     *
+     * @param ms duration in milliseconds
+     */
+    public void setWindowMs(long ms) {
+        this.windowMs = ms;
+    }
+
+    /**
+     * Sets how long a breaker stays open before a trial call is made. The default is 5 seconds.
+     *
+     * @param ms duration in milliseconds
+     */
+    public void setOpenMs(long ms) {
+        this.openMs = ms;
+    }
+
+    /**
+     * Sets a function that supplies the result of calls that are not made because a breaker is open. The
+     * CompletableFuture it returns must have a value of the type the task method would return. If the function
+     * returns null, or none is set, a {@link CircuitBreakerOpenException} is thrown instead.
+     *
+     * @param fallback to apply to the task method that is not called
+     */
+    public void setFallback(Function<TaskRun, CompletableFuture<?>> fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns the state of the breaker for a task method.
+     *
+     * @param taskPlusMethodName as returned by {@link TaskRun#getTaskPlusMethodName()}
+     * @return state, CLOSED if there have been no calls
+     */
+    public State getState(String taskPlusMethodName) {
+        Breaker breaker = breakers.get(taskPlusMethodName);
+        return breaker == null ? State.CLOSED : breaker.state.get();
+    }
+
+    /**
+     * Counts of calls within one window.
+     */
+    private static class Window {
+        final long start;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger slow = new AtomicInteger();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * State and counts for one task method.
+     */
+    private class Breaker {
+        final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+        final AtomicLong openedAt = new AtomicLong();
+        final AtomicReference<Window> window = new AtomicReference<>(new Window(System.currentTimeMillis()));
+
+        /**
+         * Determines whether a call may be made.
+         *
+         * @param now current time
+         * @return null if not, else whether the call is a trial
+         */
+        Boolean tryAcquire(long now) {
+            if (state.get() == State.CLOSED) {
+                return Boolean.FALSE;
+            }
+            // Also lets through another trial if an earlier one has not completed within openMs
+            long at = openedAt.get();
+            if (now - at >= openMs && openedAt.compareAndSet(at, now)) {
+                state.set(State.HALF_OPEN);
+                return Boolean.TRUE;
+            }
+            return null;
+        }
+
+        void record(String key, boolean trial, boolean failed, long durationMs) {
+            long now = System.currentTimeMillis();
+            boolean slow = slowCallMs > 0 && durationMs > slowCallMs;
+            if (trial) {
+                if (failed || slow) {
+                    open(key, now);
+                } else {
+                    window.set(new Window(now));
+                    state.set(State.CLOSED);
+                    LOG.debug("Closed circuit breaker for {}", key);
+                }
+                return;
+            }
+            Window current = window.get();
+            if (now - current.start >= windowMs) {
+                window.compareAndSet(current, new Window(now));
+                current = window.get();
+            }
+            int calls = current.calls.incrementAndGet();
+            int failures = failed ? current.failures.incrementAndGet() : current.failures.get();
+            int slowCalls = slow ? current.slow.incrementAndGet() : current.slow.get();
+            if (calls >= minimumCalls && state.get() == State.CLOSED) {
+                if (failures >= failureRateThreshold * calls
+                        || (slowCallMs > 0 && slowCalls >= slowCallRateThreshold * calls)) {
+                    open(key, now);
+                }
+            }
+        }
+
+        private void open(String key, long now) {
+            openedAt.set(now);
+            state.set(State.OPEN);
+            LOG.debug("Opened circuit breaker for {}", key);
+        }
+    }
+
+    @Override
+    public Object before(TaskRun taskRun) {
+        return null;
+    }
+
+    @Override
+    public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
+        String key = taskRun.getTaskPlusMethodName();
+        Breaker breaker = breakers.computeIfAbsent(key, k -> new Breaker());
+        long start = System.currentTimeMillis();
+        Boolean trial = breaker.tryAcquire(start);
+        if (trial == null) {
+            Function<TaskRun, CompletableFuture<?>> fn = fallback;
+            CompletableFuture<?> cf = fn == null ? null : fn.apply(taskRun);
+            if (cf == null) {
+                throw new CircuitBreakerOpenException("Circuit breaker open for " + key);
+            }
+            return cf;
+        }
+        Object rv;
+        try {
+            rv = taskRun.run();
+        } catch (RuntimeException | Error e) {
+            breaker.record(key, trial, true, System.currentTimeMillis() - start);
+            throw e;
+        }
+        if (rv instanceof CompletableFuture) {
+            ((CompletableFuture<?>) rv).whenComplete((v, t) ->
+                    breaker.record(key, trial, t != null, System.currentTimeMillis() - start));
+        } else {
+            breaker.record(key, trial, false, System.currentTimeMillis() - start);
+        }
+        return rv;
+    }
+
+    @Override
+    public void onComplete(TaskRun taskRun, Object fromBefore, boolean doneOnExit) {
+    }
+}
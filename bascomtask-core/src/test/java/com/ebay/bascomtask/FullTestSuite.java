@@ -17,6 +17,7 @@
 package com.ebay.bascomtask;
 
 import com.ebay.bascomtask.core.*;
+import com.ebay.bascomtask.runners.CircuitBreakerTaskRunnerTest;
 import com.ebay.bascomtask.runners.LogTaskRunnerTest;
 import com.ebay.bascomtask.runners.ProfilingTaskRunnerTest;
 import com.ebay.bascomtask.runners.StatTaskRunnerTest;
@@ -34,10 +35,20 @@ import org.junit.runners.Suite;
         LogTaskRunnerTest.class,
         ProfilingTaskRunnerTest.class,
         StatTaskRunnerTest.class,
+        CircuitBreakerTaskRunnerTest.class,
         TimingTest.class,
         AccessTest.class,
         OrchestratorPassingTest.class,
-        TaskVariationsTest.class
+        TaskVariationsTest.class,
+        ExecutorServiceTest.class,
+        SchedulingTest.class,
+        BatchTest.class,
+        ReuseTest.class,
+        TimeoutTest.class,
+        HedgeTest.class,
+        RetryTest.class,
+        AdmissionTest.class,
+        GraphTemplateTest.class
 
 })
 public class FullTestSuite {
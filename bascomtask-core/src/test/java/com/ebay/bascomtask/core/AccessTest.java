@@ -32,6 +32,12 @@ public class AccessTest extends BaseOrchestratorTest {
 
     interface INotPublic extends TaskInterface<INotPublic> {
         CompletableFuture<Integer> getSomething();
+
+        int direct(int x);
+
+        String join(String... parts);
+
+        int sum(int a, int b, int c, int d, int e);
     }
 
     private static class NotPublic implements INotPublic {
@@ -39,6 +45,24 @@ public class AccessTest extends BaseOrchestratorTest {
         public CompletableFuture<Integer> getSomething() {
             return complete(1);
         }
+
+        @Override
+        public int direct(int x) {
+            if (x < 0) {
+                throw new IllegalArgumentException("negative");
+            }
+            return x + 1;
+        }
+
+        @Override
+        public String join(String... parts) {
+            return String.join("-", parts);
+        }
+
+        @Override
+        public int sum(int a, int b, int c, int d, int e) {
+            return a + b + c + d + e;
+        }
     }
 
     @Test
@@ -47,4 +71,28 @@ public class AccessTest extends BaseOrchestratorTest {
         CompletableFuture<Integer> x = $.task(new NotPublic()).getSomething();
         assertEquals(1,(int)x.join());
     }
+
+    @Test
+    public void directAccess() {
+        Orchestrator $ = Orchestrator.create();
+        assertEquals(3, $.task(new NotPublic()).direct(2));
+    }
+
+    @Test
+    public void directVarArgs() {
+        Orchestrator $ = Orchestrator.create();
+        assertEquals("a-b", $.task(new NotPublic()).join("a", "b"));
+    }
+
+    @Test
+    public void directManyArgs() {
+        Orchestrator $ = Orchestrator.create();
+        assertEquals(15, $.task(new NotPublic()).sum(1, 2, 3, 4, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void directException() {
+        Orchestrator $ = Orchestrator.create();
+        $.task(new NotPublic()).direct(-1);
+    }
 }
@@ -0,0 +1,148 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.exceptions.AdmissionRejectedException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests rejection of activations that are predicted to exceed their timeout.
+ *
+ * @author Brendan McCarthy
+ */
+public class AdmissionTest extends BaseOrchestratorTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    interface ISlow extends TaskInterface<ISlow> {
+        CompletableFuture<Integer> slow(int delayMs);
+
+        CompletableFuture<Integer> after(CompletableFuture<Integer> x, int delayMs);
+    }
+
+    class Slow implements ISlow {
+        @Override
+        public CompletableFuture<Integer> slow(int delayMs) {
+            calls.incrementAndGet();
+            return complete(sleepThen(delayMs, 1));
+        }
+
+        @Override
+        public CompletableFuture<Integer> after(CompletableFuture<Integer> x, int delayMs) {
+            calls.incrementAndGet();
+            return complete(get(x) + sleepThen(delayMs, 1));
+        }
+    }
+
+    @Before
+    public void clearStats() {
+        DurationStats.clear();
+        $.setAdmissionControl(true);
+    }
+
+    private CompletableFuture<Integer> slow(String name, int delayMs) {
+        return $.task(new Slow()).name(name).slow(delayMs);
+    }
+
+    private CompletableFuture<Integer> chain(int delayMs) {
+        CompletableFuture<Integer> first = $.task(new Slow()).name("first").slow(delayMs);
+        return $.task(new Slow()).name("second").after(first, delayMs);
+    }
+
+    private static void assertRejected(Runnable activation) {
+        try {
+            activation.run();
+            fail("Not rejected");
+        } catch (AdmissionRejectedException ignore) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rejectedFromHistory() throws Exception {
+        slow("history", 50).get();
+        int before = calls.get();
+        assertRejected(() -> $.activate(20, slow("history", 50)));
+        assertEquals(before, calls.get());
+    }
+
+    @Test
+    public void admittedWithinTimeout() throws Exception {
+        slow("history", 50).get();
+        assertEquals(1, (int) $.activateAndWait(1000, slow("history", 50)).get());
+    }
+
+    @Test
+    public void admittedWithoutHistory() throws Exception {
+        CompletableFuture<Integer> cf = slow("noHistory", 50);
+        $.activate(20, cf);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void admittedWithoutTimeout() throws Exception {
+        slow("history", 50).get();
+        assertEquals(1, (int) $.activateAndWait(slow("history", 50)).get());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        slow("history", 50).get();
+        $.setAdmissionControl(false);
+        try {
+            $.activateAndWait(20, slow("history", 50));
+        } catch (AdmissionRejectedException e) {
+            fail("Rejected");
+        } catch (RuntimeException ignore) {
+            // Timing out is fine
+        }
+    }
+
+    @Test
+    public void chainPredicted() throws Exception {
+        assertEquals(2, (int) chain(40).get());
+        // Either task method alone fits
+        assertEquals(1, (int) $.activateAndWait(60, $.task(new Slow()).name("first").slow(40)).get());
+        assertRejected(() -> $.activate(60, chain(40)));
+    }
+
+    @Test
+    public void queuedTasksPredicted() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            $.setExecutorService(executorService);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1, (int) $.activateAndWait(150, $.task(new Slow()).name("queued").runSpawned().slow(20)).get());
+            }
+            // Occupy the single thread, then queue work that would be ahead of any spawned task
+            for (int i = 0; i < 11; i++) {
+                executorService.execute(() -> sleep(20));
+            }
+            assertRejected(() -> $.activate(150, $.task(new Slow()).name("queued").runSpawned().slow(20)));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Batchable;
+import com.ebay.bascomtask.exceptions.InvalidTaskMethodException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.ebay.bascomtask.core.UberTask.task;
+import static org.junit.Assert.*;
+
+/**
+ * Tests combining calls to Batchable task methods.
+ *
+ * @author Brendan McCarthy
+ */
+public class BatchTest extends BaseOrchestratorTest {
+
+    interface ILoader extends TaskInterface<ILoader> {
+        CompletableFuture<String> load(Integer key);
+
+        CompletableFuture<String> loadAfter(CompletableFuture<Integer> key);
+
+        CompletableFuture<String> loadWindowed(Integer key);
+
+        CompletableFuture<List<String>> loadAll(List<Integer> keys);
+
+        CompletableFuture<List<String>> loadAllAfter(List<CompletableFuture<Integer>> keys);
+    }
+
+    static class Loader implements ILoader {
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger singles = new AtomicInteger();
+
+        @Batchable("loadAll")
+        @Override
+        public CompletableFuture<String> load(Integer key) {
+            singles.incrementAndGet();
+            return complete("v" + key);
+        }
+
+        @Batchable("loadAllAfter")
+        @Override
+        public CompletableFuture<String> loadAfter(CompletableFuture<Integer> key) {
+            return load(get(key));
+        }
+
+        @Batchable(value = "loadAll", windowMs = 50)
+        @Override
+        public CompletableFuture<String> loadWindowed(Integer key) {
+            return load(key);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> loadAll(List<Integer> keys) {
+            batches.add(keys);
+            return complete(keys.stream().map(k -> "v" + k).collect(Collectors.toList()));
+        }
+
+        @Override
+        public CompletableFuture<List<String>> loadAllAfter(List<CompletableFuture<Integer>> keys) {
+            return loadAll(keys.stream().map(this::get).collect(Collectors.toList()));
+        }
+    }
+
+    static class ShortLoader extends Loader {
+        @Override
+        public CompletableFuture<List<String>> loadAll(List<Integer> keys) {
+            return complete(Collections.singletonList("x"));
+        }
+    }
+
+    static class FailingLoader extends Loader {
+        @Override
+        public CompletableFuture<List<String>> loadAll(List<Integer> keys) {
+            throw new IllegalStateException("backend down");
+        }
+    }
+
+    interface IBadLoader extends TaskInterface<IBadLoader> {
+        CompletableFuture<String> load(Integer key);
+    }
+
+    static class BadLoader implements IBadLoader {
+        @Batchable("missing")
+        @Override
+        public CompletableFuture<String> load(Integer key) {
+            return complete("v" + key);
+        }
+    }
+
+    @After
+    public void clearTasks() {
+        UberTask.UberTasker.clearAndVerify();
+    }
+
+    @Test
+    public void activatedTogether() {
+        Loader loader = new Loader();
+        List<CompletableFuture<String>> cfs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            cfs.add($.task(loader).load(i));
+        }
+        List<String> got = $.activateAndWait(cfs);
+        assertEquals(Arrays.asList("v0", "v1", "v2"), got);
+        assertEquals(Collections.singletonList(Arrays.asList(0, 1, 2)), loader.batches);
+        assertEquals(0, loader.singles.get());
+    }
+
+    @Test
+    public void notBatchedAlone() throws Exception {
+        Loader loader = new Loader();
+        assertEquals("v5", $.task(loader).load(5).get());
+        assertEquals(0, loader.batches.size());
+        assertEquals(1, loader.singles.get());
+    }
+
+    @Test
+    public void separateTasksNotCombined() {
+        Loader l1 = new Loader();
+        Loader l2 = new Loader();
+        List<String> got = $.activateAndWait(Arrays.asList($.task(l1).load(1), $.task(l2).load(2)));
+        assertEquals(Arrays.asList("v1", "v2"), got);
+        assertEquals(0, l1.batches.size() + l2.batches.size());
+    }
+
+    @Test
+    public void readyOnCompletionTogether() throws Exception {
+        Loader loader = new Loader();
+        CompletableFuture<Integer> key = $.task(task().delayFor(10)).ret(7);
+        CompletableFuture<String> a = $.task(loader).loadAfter(key);
+        CompletableFuture<String> b = $.task(loader).loadAfter(key);
+        List<String> got = $.activateAndWait(Arrays.asList(a, b));
+        assertEquals(Arrays.asList("v7", "v7"), got);
+        assertEquals(Collections.singletonList(Arrays.asList(7, 7)), loader.batches);
+    }
+
+    @Test
+    public void window() throws Exception {
+        Loader loader = new Loader();
+        CompletableFuture<String> a = $.task(loader).loadWindowed(1);
+        CompletableFuture<String> b = $.task(loader).loadWindowed(2);
+        // Separately activated, so combined only because of the window
+        $.activate(a);
+        $.activate(b);
+        assertEquals("v1", a.get());
+        assertEquals("v2", b.get());
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), loader.batches);
+    }
+
+    @Test
+    public void wrongResultCount() {
+        Loader loader = new ShortLoader();
+        CompletableFuture<String> a = $.task(loader).load(1);
+        CompletableFuture<String> b = $.task(loader).load(2);
+        try {
+            $.activateAndWait(a, b);
+            fail("Expected exception");
+        } catch (InvalidTaskMethodException ignore) {
+        }
+        assertTrue(a.isCompletedExceptionally());
+        assertTrue(b.isCompletedExceptionally());
+    }
+
+    @Test
+    public void batchMethodFails() {
+        Loader loader = new FailingLoader();
+        CompletableFuture<String> a = $.task(loader).load(1);
+        CompletableFuture<String> b = $.task(loader).load(2);
+        try {
+            $.activateAndWait(a, b);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("backend down", e.getMessage());
+        }
+        assertTrue(a.isCompletedExceptionally());
+        assertTrue(b.isCompletedExceptionally());
+    }
+
+    @Test(expected = InvalidTaskMethodException.class)
+    public void missingBatchMethod() {
+        $.task(new BadLoader()).load(1);
+    }
+
+    @Test(expected = InvalidTaskMethodException.class)
+    public void missingBatchMethodOnWarmUp() {
+        Orchestrator.warmUp(BadLoader.class);
+    }
+}
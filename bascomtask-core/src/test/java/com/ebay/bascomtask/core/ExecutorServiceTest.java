@@ -0,0 +1,253 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.RunOn;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.ebay.bascomtask.core.UberTask.task;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests built-in alternatives to the default ExecutorService.
+ *
+ * @author Brendan McCarthy
+ */
+public class ExecutorServiceTest extends BaseOrchestratorTest {
+
+    /**
+     * Task method that blocks on a nested orchestration using the supplied ExecutorService.
+     */
+    interface INested extends TaskInterface<INested> {
+        CompletableFuture<Integer> nested(ExecutorService executorService, SpawnMode mode, int v);
+    }
+
+    static class Nested implements INested {
+        @Override
+        public CompletableFuture<Integer> nested(ExecutorService executorService, SpawnMode mode, int v) {
+            Orchestrator $$ = Orchestrator.create("nested");
+            $$.setExecutorService(executorService);
+            $$.setSpawnMode(mode);
+            CompletableFuture<Integer> cf = $$.task(task().delayFor(5)).runSpawned().ret(v);
+            return complete(get(cf) + 1);
+        }
+    }
+
+    /**
+     * Records the thread that each task method runs in.
+     */
+    interface IRouted extends TaskInterface<IRouted> {
+        CompletableFuture<Thread> plain();
+
+        @RunOn("io")
+        CompletableFuture<Thread> io();
+    }
+
+    static class Routed implements IRouted {
+        @Override
+        public CompletableFuture<Thread> plain() {
+            return complete(Thread.currentThread());
+        }
+
+        @RunOn("io")
+        @Override
+        public CompletableFuture<Thread> io() {
+            return complete(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Thread pool that remembers which threads it has created.
+     */
+    static class TrackedPool {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final ExecutorService executorService = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            threads.add(thread);
+            return thread;
+        });
+    }
+
+    @After
+    public void clearTasks() {
+        UberTask.UberTasker.clearAndVerify();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void virtualThreadsUnsupported() {
+        assumeFalse(GlobalOrchestratorConfig.isVirtualThreadSupported());
+        GlobalOrchestratorConfig.getVirtualThreadExecutorService();
+    }
+
+    @Test
+    public void virtualThreadsNotCappedByPoolSize() throws Exception {
+        assumeTrue(GlobalOrchestratorConfig.isVirtualThreadSupported());
+        $.setExecutorService(GlobalOrchestratorConfig.getVirtualThreadExecutorService());
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+
+        final int delay = 50;
+        final int count = GlobalOrchestratorConfig.DEFAULT_FIXED_THREADPOOL_SIZE * 5;
+        List<CompletableFuture<Integer>> cfs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cfs.add($.task(task().delayFor(delay)).ret(i));
+        }
+        long start = System.currentTimeMillis();
+        List<Integer> results = $.activateAndWait(cfs);
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(count, results.size());
+        assertTrue("Took " + duration, duration < delay * 4);
+        assertEquals(count, $.getCountOfThreadsSpawned());
+    }
+
+    @Test
+    public void virtualThreadsInterrupted() throws Exception {
+        assumeTrue(GlobalOrchestratorConfig.isVirtualThreadSupported());
+        $.setExecutorService(GlobalOrchestratorConfig.getVirtualThreadExecutorService());
+        $.setTimeoutStrategy(TimeoutStrategy.INTERRUPT_IMMEDIATELY);
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        CompletableFuture<Integer> f1 = $.task(task(0).delayFor(500)).ret(1);
+        try {
+            $.activateAndWait(10, f1);
+            fail("No timeout");
+        } catch (TaskInterruptedException | TimeoutExceededException ignore) {
+            // expected
+        }
+    }
+
+    @Test
+    public void interruptWithoutPoolThread() throws Exception {
+        // A single pool thread is occupied by the task, so the timeout must be enforced from elsewhere
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            $.setExecutorService(executorService);
+            $.setTimeoutStrategy(TimeoutStrategy.INTERRUPT_IMMEDIATELY);
+            $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+            CompletableFuture<Integer> f1 = $.task(task(0).delayFor(2000)).ret(1);
+            long start = System.currentTimeMillis();
+            try {
+                $.activateAndWait(10, f1);
+                fail("No timeout");
+            } catch (TaskInterruptedException | TimeoutExceededException ignore) {
+                // expected
+            }
+            try {
+                f1.get();  // Would complete normally after the full delay if not interrupted
+                fail("Not interrupted");
+            } catch (Exception ignore) {
+                // expected
+            }
+            long duration = System.currentTimeMillis() - start;
+            assertTrue("Took " + duration, duration < 1000);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void nestedWorkStealing(SpawnMode mode) throws Exception {
+        // With a fixed pool of this size the nested task could never be started
+        ExecutorService executorService = GlobalOrchestratorConfig.newWorkStealingExecutorService(1);
+        try {
+            $.setExecutorService(executorService);
+            $.setSpawnMode(mode);
+            CompletableFuture<Integer> cf = $.task(new Nested()).runSpawned().nested(executorService, mode, 5);
+            assertEquals(6, (int) cf.get());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void workStealingNestedBlockWithReuse() throws Exception {
+        nestedWorkStealing(SpawnMode.WHEN_NEEDED);
+    }
+
+    @Test(timeout = 5000)
+    public void workStealingNestedBlockNoReuse() throws Exception {
+        nestedWorkStealing(SpawnMode.WHEN_NEEDED_NO_REUSE);
+    }
+
+    @Test
+    public void runOnAnnotation() throws Exception {
+        TrackedPool io = new TrackedPool();
+        $.setExecutorService("io", io.executorService);
+        Thread thread = $.task(new Routed()).io().get();
+        assertTrue(io.threads.contains(thread));
+        assertSame(io.executorService, $.getExecutorService("io"));
+    }
+
+    @Test
+    public void runOnWiring() throws Exception {
+        TrackedPool cpu = new TrackedPool();
+        $.setExecutorService("cpu", cpu.executorService);
+        CompletableFuture<Thread> plain = $.task(new Routed()).plain();
+        CompletableFuture<Thread> routed = $.task(new Routed()).runOn("cpu").plain();
+        $.activateAndWait(plain, routed);
+        assertFalse(cpu.threads.contains(plain.get()));
+        assertTrue(cpu.threads.contains(routed.get()));
+    }
+
+    @Test
+    public void runOnOverridesAnnotation() throws Exception {
+        TrackedPool io = new TrackedPool();
+        TrackedPool cpu = new TrackedPool();
+        $.setExecutorService("io", io.executorService);
+        $.setExecutorService("cpu", cpu.executorService);
+        Thread thread = $.task(new Routed()).runOn("cpu").io().get();
+        assertTrue(cpu.threads.contains(thread));
+    }
+
+    @Test
+    public void runOnReversedByLight() throws Exception {
+        TrackedPool io = new TrackedPool();
+        $.setExecutorService("io", io.executorService);
+        Thread thread = $.task(new Routed()).runOn("io").light().plain().get();
+        assertSame(Thread.currentThread(), thread);
+        thread = $.task(new Routed()).light().io().get();
+        assertSame(Thread.currentThread(), thread);
+    }
+
+    @Test
+    public void runOnUnregisteredUsesDefault() throws Exception {
+        Thread thread = $.task(new Routed()).io().get();
+        assertNotSame(Thread.currentThread(), thread);
+    }
+
+    @Test
+    public void runOnGlobalRegistration() throws Exception {
+        TrackedPool io = new TrackedPool();
+        GlobalOrchestratorConfig.getConfig().setExecutorService("io", io.executorService);
+        Orchestrator $$ = Orchestrator.create();
+        Thread thread = $$.task(new Routed()).io().get();
+        assertTrue(io.threads.contains(thread));
+        GlobalOrchestratorConfig.getConfig().restoreConfigurationDefaults(null);
+        assertNull(GlobalOrchestratorConfig.getConfig().getExecutorService("io"));
+    }
+}
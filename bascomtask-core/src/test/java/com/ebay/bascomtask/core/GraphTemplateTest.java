@@ -0,0 +1,137 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.exceptions.InvalidTaskException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.ebay.bascomtask.core.UberTask.task;
+import static org.junit.Assert.*;
+
+/**
+ * Tests reusable graph templates.
+ *
+ * @author Brendan McCarthy
+ */
+public class GraphTemplateTest extends BaseOrchestratorTest {
+
+    @After
+    public void clearTasks() {
+        UberTask.UberTasker.clearAndVerify();
+    }
+
+    private static GraphTemplate<Integer> diamond(int expectedCount) {
+        UberTask top = task(expectedCount);
+        UberTask left = task(expectedCount);
+        UberTask right = task(expectedCount);
+        UberTask bottom = task(expectedCount);
+        return GraphTemplate.define(($, params) -> {
+            CompletableFuture<Integer> t = $.task(top).inc(params.get(0));
+            CompletableFuture<Integer> l = $.task(left).inc(t);
+            CompletableFuture<Integer> r = $.task(right).add(t, params.get(1));
+            return $.task(bottom).add(l, r);
+        });
+    }
+
+    @Test
+    public void instantiateRepeatedly() throws Exception {
+        GraphTemplate<Integer> template = diamond(3);
+        assertEquals(2, template.getParameterCount());
+        for (int i = 0; i < 3; i++) {
+            int got = template.instantiate(Orchestrator.create(), i, 10).get();
+            assertEquals((i + 2) + (i + 1 + 10), got);
+        }
+    }
+
+    @Test
+    public void nothingRunDuringDefinition() throws Exception {
+        UberTask.UberTasker t = task();
+        GraphTemplate<Integer> template = GraphTemplate.define(($, params) -> $.task(t).ret(5));
+        assertEquals(0, t.getActualCount());
+        assertEquals(0, template.getParameterCount());
+        assertEquals(5, (int) template.instantiate($).get());
+        assertEquals(1, t.getActualCount());
+    }
+
+    @Test
+    public void futureParameter() throws Exception {
+        GraphTemplate<Integer> template = diamond(1);
+        CompletableFuture<Integer> x = $.task(task()).ret(1);
+        int got = $.task(task()).inc(template.instantiate($, x, 2)).get();
+        assertEquals(3 + 4 + 1, got);
+    }
+
+    @Test
+    public void settingsCarriedOver() throws Exception {
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        UberTask.UberTasker t = task();
+        GraphTemplate<Integer> template = GraphTemplate.define(($, params) -> $.task(t).light().ret(1));
+        template.instantiate($).get();
+        assertEquals(Thread.currentThread().getName(), t.getThreadName());
+        assertEquals(0, $.getCountOfThreadsSpawned());
+    }
+
+    @Test(expected = InvalidTaskException.class)
+    public void conditionalsNotSupported() {
+        GraphTemplate.define(($, params) -> $.task(task(0)).inc($.cond(params.get(0), params.get(1), params.get(2))));
+    }
+
+    @Test
+    public void activatedCallsIncluded() throws Exception {
+        UberTask.UberTasker side = task(2);
+        UberTask.UberTasker t = task(2);
+        GraphTemplate<Integer> template = GraphTemplate.define(($, params) -> {
+            $.task(side).activate().inc(params.get(0));
+            return $.task(t).ret(1);
+        });
+        assertEquals(0, side.getActualCount());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(1, (int) template.instantiate(Orchestrator.create(), i).get());
+        }
+    }
+
+    @Test(expected = InvalidTaskException.class)
+    public void activationInDefinitionRejected() {
+        GraphTemplate.define(($, params) -> $.activate($.task(task(0)).ret(1)));
+    }
+
+    @Test(expected = InvalidTaskException.class)
+    public void unusedConditionalRejected() {
+        GraphTemplate.define(($, params) -> {
+            $.cond(params.get(0), params.get(1), params.get(2));
+            return $.task(task(0)).ret(1);
+        });
+    }
+
+    @Test
+    public void definitionNotSeenByInitializers() {
+        List<Orchestrator> created = new ArrayList<>();
+        GlobalOrchestratorConfig.getConfig().initializeWith((orchestrator, arg) -> created.add(orchestrator));
+        GraphTemplate.define(($, params) -> $.task(task(0)).ret(1));
+        assertEquals(0, created.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongParameterCount() {
+        diamond(0).instantiate($, 1);
+    }
+}
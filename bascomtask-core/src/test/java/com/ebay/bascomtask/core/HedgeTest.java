@@ -0,0 +1,227 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Hedged;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests racing slow calls to Hedged task methods against second calls.
+ *
+ * @author Brendan McCarthy
+ */
+public class HedgeTest extends BaseOrchestratorTest {
+
+    private final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        ses.shutdownNow();
+    }
+
+    interface IBackend extends TaskInterface<IBackend> {
+        CompletableFuture<Integer> fixed();
+
+        CompletableFuture<Integer> learned();
+    }
+
+    /**
+     * Responds asynchronously, as a remote call would, with the delay in milliseconds of each response, taken in
+     * order from those supplied and then 1ms for any further calls. A negative delay fails the call.
+     */
+    class Backend implements IBackend {
+        final AtomicInteger calls = new AtomicInteger();
+        private final Deque<Integer> delays;
+
+        Backend(Integer... delays) {
+            this.delays = new ArrayDeque<>(Arrays.asList(delays));
+        }
+
+        @Hedged(afterMs = 20)
+        @Override
+        public CompletableFuture<Integer> fixed() {
+            return respond();
+        }
+
+        @Hedged
+        @Override
+        public CompletableFuture<Integer> learned() {
+            return respond();
+        }
+
+        private CompletableFuture<Integer> respond() {
+            calls.incrementAndGet();
+            Integer next;
+            synchronized (delays) {
+                next = delays.poll();
+            }
+            int delay = next == null ? 1 : next;
+            CompletableFuture<Integer> cf = new CompletableFuture<>();
+            ses.schedule(() -> {
+                if (delay < 0) {
+                    cf.completeExceptionally(new RuntimeException("Failed after " + -delay));
+                } else {
+                    cf.complete(delay);
+                }
+            }, Math.abs(delay), TimeUnit.MILLISECONDS);
+            return cf;
+        }
+    }
+
+    @Test
+    public void fixedHedge() throws Exception {
+        Backend backend = new Backend(500);
+        long start = System.currentTimeMillis();
+        assertEquals(1, (int) $.task(backend).name("hedgeFixed").fixed().get());
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Took " + duration, duration < 250);
+        assertEquals(2, backend.calls.get());
+    }
+
+    /**
+     * Counts the calls passed through it.
+     */
+    static class CountingRunner implements TaskRunner {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Object before(TaskRun taskRun) {
+            return null;
+        }
+
+        @Override
+        public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
+            calls.incrementAndGet();
+            return taskRun.run();
+        }
+
+        @Override
+        public void onComplete(TaskRun taskRun, Object fromBefore, boolean doneOnExit) {
+        }
+    }
+
+    @Test
+    public void hedgeThroughRunners() throws Exception {
+        CountingRunner runner = new CountingRunner();
+        $.firstInterceptWith(runner);
+        Backend backend = new Backend(500);
+        assertEquals(1, (int) $.task(backend).name("hedgeRunners").fixed().get());
+        assertEquals(2, backend.calls.get());
+        assertEquals(2, runner.calls.get());
+    }
+
+    @Test
+    public void noHedgeWhenFast() throws Exception {
+        Backend backend = new Backend(1);
+        assertEquals(1, (int) $.task(backend).name("hedgeFast").fixed().get());
+        sleep(40);
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void firstFailsBeforeHedge() throws Exception {
+        Backend backend = new Backend(-1);
+        try {
+            $.task(backend).name("hedgeFail").fixed().get();
+            fail("No exception");
+        } catch (RuntimeException e) {
+            assertEquals("Failed after 1", e.getMessage());
+        }
+        sleep(40);
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void firstFailsAfterHedge() throws Exception {
+        // Second call, started at 20ms, completes after the first has failed
+        Backend backend = new Backend(-40, 60);
+        assertEquals(60, (int) $.task(backend).name("hedgeFailLater").fixed().get());
+        assertEquals(2, backend.calls.get());
+    }
+
+    @Test
+    public void bothFail() throws Exception {
+        Backend backend = new Backend(-40, -30);
+        try {
+            $.task(backend).name("hedgeFailBoth").fixed().get();
+            fail("No exception");
+        } catch (RuntimeException e) {
+            assertEquals("Failed after 30", e.getMessage());
+        }
+        assertEquals(2, backend.calls.get());
+    }
+
+    @Test
+    public void completionTimesRecorded() throws Exception {
+        Backend backend = new Backend();
+        DurationStats.clear();
+        for (int i = 0; i < HedgedExecution.MIN_SAMPLES; i++) {
+            $.task(backend).name("hedgeRecorded").learned().get();
+        }
+        assertEquals(HedgedExecution.MIN_SAMPLES, backend.calls.get());
+        assertEquals(HedgedExecution.MIN_SAMPLES, DurationStats.histogram("hedgeRecorded.learned").getCount());
+    }
+
+    @Test
+    public void learnedHedge() throws Exception {
+        DurationStats.clear();
+        // Recorded directly rather than by timing calls, so that the learned threshold does not depend on machine speed
+        DurationStats.Histogram histogram = DurationStats.histogram("hedgeLearned.learned");
+        for (int i = 0; i < HedgedExecution.MIN_SAMPLES; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        // First call does not complete within the test, so only a second call can supply the result
+        Backend slow = new Backend(60_000);
+        assertEquals(1, (int) $.task(slow).name("hedgeLearned").learned().get());
+        assertEquals(2, slow.calls.get());
+    }
+
+    @Test
+    public void notLearnedYet() throws Exception {
+        DurationStats.clear();
+        Backend backend = new Backend(100);
+        assertEquals(100, (int) $.task(backend).name("hedgeUnlearned").learned().get());
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        DurationStats.Histogram histogram = new DurationStats.Histogram();
+        assertEquals(0, histogram.getPercentileNanos(0.95));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        long p95 = histogram.getPercentileNanos(0.95);
+        // Buckets are about 19% wide
+        assertTrue("p95=" + p95, p95 >= 95_000 && p95 <= 95_000 * 1.2);
+        long p50 = histogram.getPercentileNanos(0.5);
+        assertTrue("p50=" + p50, p50 >= 50_000 && p50 <= 50_000 * 1.2);
+    }
+}
@@ -19,8 +19,14 @@ package com.ebay.bascomtask.core;
 import org.junit.Test;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Passing Orchestrators to nested tasks.
@@ -36,6 +42,7 @@ public class OrchestratorPassingTest extends BaseOrchestratorTest {
         CompletableFuture<Integer> external();
         CompletableFuture<CompletableFuture<Integer>> nestSimple();
         CompletableFuture<CompletableFuture<Integer>> nestExternal();
+        CompletableFuture<Boolean> currentAfterNested();
     }
 
     static class FooTask implements IFooTask {
@@ -67,6 +74,13 @@ public class OrchestratorPassingTest extends BaseOrchestratorTest {
             CompletableFuture<Integer> sv = nested.task(new FooTask()).simple();
             return complete(sv);
         }
+        @Override
+        public CompletableFuture<Boolean> currentAfterNested() {
+            Orchestrator before = Orchestrator.current();
+            Orchestrator nested = Orchestrator.create();
+            nested.task(new FooTask()).simple().join();
+            return complete(before == Orchestrator.current());
+        }
     }
 
     @Test
@@ -86,4 +100,70 @@ public class OrchestratorPassingTest extends BaseOrchestratorTest {
         Integer v = c1.get();
         assertEquals(FIXED_VALUE,(int)v);
     }
+
+    @Test
+    public void currentPreservedAfterNested() throws Exception {
+        Orchestrator $ = Orchestrator.create();
+        boolean same = $.task(new FooTask()).currentAfterNested().get();
+        assertTrue(same);
+    }
+
+    interface IReuseTask extends TaskInterface<IReuseTask> {
+        CompletableFuture<Thread> waitOnNested();
+
+        CompletableFuture<Integer> external();
+
+        CompletableFuture<Thread> thread(CompletableFuture<Void> after);
+    }
+
+    static class ReuseTask implements IReuseTask {
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final CompletableFuture<Integer> release = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<Thread> waitOnNested() {
+            Orchestrator nested = Orchestrator.create();
+            CompletableFuture<Integer> cf = nested.task(this).light().external();
+            waiting.countDown();
+            get(cf);
+            return complete(Thread.currentThread());
+        }
+
+        @Override
+        public CompletableFuture<Integer> external() {
+            return release;
+        }
+
+        @Override
+        public CompletableFuture<Thread> thread(CompletableFuture<Void> after) {
+            return complete(Thread.currentThread());
+        }
+    }
+
+    @Test
+    public void waitingThreadReusedByEnclosing() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(4, r -> {
+            created.incrementAndGet();
+            return new Thread(r);
+        });
+        try {
+            Orchestrator $ = Orchestrator.create();
+            $.setExecutorService(executorService);
+            ReuseTask task = new ReuseTask();
+            CompletableFuture<Void> gate = new CompletableFuture<>();
+            CompletableFuture<Thread> waiter = $.task(task).runSpawned().waitOnNested();
+            CompletableFuture<Thread> reused = $.task(task).runSpawned().thread(gate);
+            $.activate(waiter, reused);
+            task.waiting.await();
+            sleep(50);  // Let the spawned thread start waiting on the nested orchestrator
+            gate.complete(null);
+            Thread thread = reused.get();
+            task.release.complete(1);
+            assertSame(waiter.get(), thread);
+            assertEquals(1, created.get());
+        } finally {
+            executorService.shutdown();
+        }
+    }
 }
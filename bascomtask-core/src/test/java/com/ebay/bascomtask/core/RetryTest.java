@@ -0,0 +1,255 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Retry;
+import com.ebay.bascomtask.exceptions.CircuitBreakerOpenException;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+import com.ebay.bascomtask.runners.CircuitBreakerTaskRunner;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests calling Retry task methods again after they fail.
+ *
+ * @author Brendan McCarthy
+ */
+public class RetryTest extends BaseOrchestratorTest {
+
+    private final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        ses.shutdownNow();
+    }
+
+    interface IBackend extends TaskInterface<IBackend> {
+        CompletableFuture<Integer> flaky();
+
+        CompletableFuture<Integer> thrower();
+
+        CompletableFuture<Integer> selective(boolean illegalArgument);
+
+        CompletableFuture<Integer> paced();
+
+        CompletableFuture<Integer> other();
+    }
+
+    /**
+     * Fails the given number of calls to each method, then responds with the number of calls made.
+     */
+    class Backend implements IBackend {
+        final AtomicInteger calls = new AtomicInteger();
+        private final int failures;
+
+        Backend(int failures) {
+            this.failures = failures;
+        }
+
+        @Retry(delayMs = 10)
+        @Override
+        public CompletableFuture<Integer> flaky() {
+            // Responds asynchronously, as a remote call would
+            int call = calls.incrementAndGet();
+            CompletableFuture<Integer> cf = new CompletableFuture<>();
+            ses.schedule(() -> {
+                if (call <= failures) {
+                    cf.completeExceptionally(new IllegalStateException("Failed call " + call));
+                } else {
+                    cf.complete(call);
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            return cf;
+        }
+
+        @Retry(delayMs = 100, jitter = 0)
+        @Override
+        public CompletableFuture<Integer> thrower() {
+            int call = calls.incrementAndGet();
+            if (call <= failures) {
+                throw new IllegalStateException("Failed call " + call);
+            }
+            return complete(call);
+        }
+
+        @Retry(delayMs = 10, retryOn = IllegalStateException.class)
+        @Override
+        public CompletableFuture<Integer> selective(boolean illegalArgument) {
+            int call = calls.incrementAndGet();
+            if (call <= failures) {
+                throw illegalArgument ? new IllegalArgumentException("Failed call " + call)
+                        : new IllegalStateException("Failed call " + call);
+            }
+            return complete(call);
+        }
+
+        @Retry(maxAttempts = 5, delayMs = 200, jitter = 0)
+        @Override
+        public CompletableFuture<Integer> paced() {
+            int call = calls.incrementAndGet();
+            if (call <= failures) {
+                throw new IllegalStateException("Failed call " + call);
+            }
+            return complete(call);
+        }
+
+        @Override
+        public CompletableFuture<Integer> other() {
+            sleep(20);
+            return complete(0);
+        }
+    }
+
+    private static void assertFailedCall(CompletableFuture<Integer> cf, int call) throws Exception {
+        try {
+            cf.get();
+            fail("No exception");
+        } catch (RuntimeException e) {
+            assertEquals("Failed call " + call, e.getMessage());
+        }
+    }
+
+    @Test
+    public void succeedsAfterRetries() throws Exception {
+        Backend backend = new Backend(2);
+        assertEquals(3, (int) $.task(backend).flaky().get());
+        assertEquals(3, backend.calls.get());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        Backend backend = new Backend(5);
+        assertFailedCall($.task(backend).flaky(), 3);
+        sleep(50);
+        assertEquals(3, backend.calls.get());
+    }
+
+    @Test
+    public void synchronousThrowRetried() throws Exception {
+        Backend backend = new Backend(1);
+        assertEquals(2, (int) $.task(backend).thrower().get());
+    }
+
+    @Test
+    public void retryOnMatched() throws Exception {
+        Backend backend = new Backend(1);
+        assertEquals(2, (int) $.task(backend).selective(false).get());
+    }
+
+    @Test
+    public void retryOnNotMatched() throws Exception {
+        Backend backend = new Backend(1);
+        try {
+            $.task(backend).selective(true).get();
+            fail("No exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Failed call 1", e.getMessage());
+        }
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void retriesThroughRunners() throws Exception {
+        CircuitBreakerTaskRunner breaker = new CircuitBreakerTaskRunner();
+        breaker.setMinimumCalls(2);
+        $.firstInterceptWith(breaker);
+        Backend backend = new Backend(5);
+        try {
+            $.task(backend).flaky().get();
+            fail("No exception");
+        } catch (CircuitBreakerOpenException ignore) {
+            // Opened by the first two calls, so the third is not made
+        }
+        assertEquals(2, backend.calls.get());
+    }
+
+    @Test
+    public void dependentWaitsForRetries() throws Exception {
+        Backend backend = new Backend(2);
+        CompletableFuture<Integer> cf = $.task(backend).flaky();
+        CompletableFuture<Integer> sum = $.fn(cf, cf, Integer::sum);
+        assertEquals(6, (int) sum.get());
+    }
+
+    @Test
+    public void poolThreadFreeDuringBackoff() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            $.setExecutorService(executorService);
+            Backend backend = new Backend(2);
+            CompletableFuture<Integer> retried = $.task(backend).runSpawned().thrower();
+            CompletableFuture<Integer> other = $.task(new Backend(0)).runSpawned().other();
+            long start = System.currentTimeMillis();
+            $.activate(retried, other);
+            other.get();
+            long duration = System.currentTimeMillis() - start;
+            // Would be after both delays if they were spent on the single pool thread
+            assertTrue("Took " + duration, duration < 150);
+            assertEquals(3, (int) retried.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void noRetryPastActivationTimeout() throws Exception {
+        Backend backend = new Backend(1);
+        CompletableFuture<Integer> cf = $.task(backend).paced();
+        long start = System.currentTimeMillis();
+        $.activate(100, cf);
+        assertFailedCall(cf, 1);
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Took " + duration, duration < 150);
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void backoff() throws Exception {
+        Retry retry = Backend.class.getMethod("paced").getAnnotation(Retry.class);
+        assertEquals(200, RetryingExecution.delayMs(retry, 1, 0.5));
+        assertEquals(400, RetryingExecution.delayMs(retry, 2, 0.5));
+        assertEquals(1000, RetryingExecution.delayMs(retry, 4, 0.5));
+
+        retry = Backend.class.getMethod("flaky").getAnnotation(Retry.class);
+        assertEquals(10, RetryingExecution.delayMs(retry, 1, 0));
+        assertEquals(20, RetryingExecution.delayMs(retry, 2, 0));
+        assertEquals(10, RetryingExecution.delayMs(retry, 2, 1));
+        assertEquals(640, RetryingExecution.delayMs(retry, 7, 0));
+        assertEquals(1000, RetryingExecution.delayMs(retry, 20, 0));
+    }
+
+    @Test
+    public void retryable() throws Exception {
+        Retry any = Backend.class.getMethod("flaky").getAnnotation(Retry.class);
+        assertTrue(RetryingExecution.isRetryable(any, new IllegalArgumentException()));
+        assertFalse(RetryingExecution.isRetryable(any, new TimeoutExceededException("x")));
+        assertFalse(RetryingExecution.isRetryable(any, new OutOfMemoryError()));
+
+        Retry selective = Backend.class.getMethod("selective", boolean.class).getAnnotation(Retry.class);
+        assertTrue(RetryingExecution.isRetryable(selective, new IllegalStateException()));
+        assertFalse(RetryingExecution.isRetryable(selective, new IllegalArgumentException()));
+    }
+}
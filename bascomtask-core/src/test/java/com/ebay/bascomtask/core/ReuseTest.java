@@ -0,0 +1,502 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Cacheable;
+import com.ebay.bascomtask.annotations.SingleFlight;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ebay.bascomtask.core.UberTask.task;
+import static org.junit.Assert.*;
+
+/**
+ * Tests sharing of results among equivalent task method invocations.
+ *
+ * @author Brendan McCarthy
+ */
+public class ReuseTest extends BaseOrchestratorTest {
+
+    interface ICounter extends TaskInterface<ICounter> {
+        CompletableFuture<Integer> times(int x);
+
+        CompletableFuture<Integer> times(CompletableFuture<Integer> x);
+    }
+
+    static class Counter implements ICounter {
+        final int factor;
+        final AtomicInteger calls = new AtomicInteger();
+
+        Counter(int factor) {
+            this.factor = factor;
+        }
+
+        @Override
+        public CompletableFuture<Integer> times(int x) {
+            calls.incrementAndGet();
+            return complete(x * factor);
+        }
+
+        @Override
+        public CompletableFuture<Integer> times(CompletableFuture<Integer> x) {
+            return times(get(x));
+        }
+    }
+
+    /**
+     * Counter that is equal to others with the same factor.
+     */
+    static class ValueCounter extends Counter {
+        ValueCounter(int factor) {
+            super(factor);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ValueCounter && ((ValueCounter) o).factor == factor;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(factor);
+        }
+    }
+
+    @After
+    public void clearTasks() {
+        UberTask.UberTasker.clearAndVerify();
+        ResultCache.clear();
+    }
+
+    @Test
+    public void notMemoizingByDefault() throws Exception {
+        assertFalse($.isMemoizing());
+        Counter counter = new Counter(2);
+        CompletableFuture<Integer> a = $.task(counter).times(3);
+        CompletableFuture<Integer> b = $.task(counter).times(3);
+        assertNotSame(a, b);
+        $.activateAndWait(a, b);
+        assertEquals(2, counter.calls.get());
+    }
+
+    @Test
+    public void memoizeSameTask() throws Exception {
+        $.setMemoizing(true);
+        Counter counter = new Counter(2);
+        CompletableFuture<Integer> a = $.task(counter).times(3);
+        CompletableFuture<Integer> b = $.task(counter).times(3);
+        CompletableFuture<Integer> c = $.task(counter).times(4);
+        assertSame(a, b);
+        $.activateAndWait(a, b, c);
+        assertEquals(6, (int) b.get());
+        assertEquals(8, (int) c.get());
+        assertEquals(2, counter.calls.get());
+    }
+
+    @Test
+    public void memoizeEqualTasks() throws Exception {
+        $.setMemoizing(true);
+        ValueCounter c1 = new ValueCounter(2);
+        ValueCounter c2 = new ValueCounter(2);
+        Counter c3 = new Counter(2);
+        CompletableFuture<Integer> a = $.task(c1).times(3);
+        CompletableFuture<Integer> b = $.task(c2).times(3);
+        CompletableFuture<Integer> c = $.task(c3).times(3);
+        assertSame(a, b);
+        assertNotSame(a, c);
+        $.activateAndWait(a, b, c);
+        assertEquals(1, c1.calls.get() + c2.calls.get());
+        assertEquals(1, c3.calls.get());
+    }
+
+    @Test
+    public void memoizeFutureArguments() throws Exception {
+        $.setMemoizing(true);
+        Counter counter = new Counter(2);
+        CompletableFuture<Integer> x = $.task(task()).ret(5);
+        CompletableFuture<Integer> y = $.task(task()).ret(5);
+        CompletableFuture<Integer> a = $.task(counter).times(x);
+        CompletableFuture<Integer> b = $.task(counter).times(x);
+        CompletableFuture<Integer> c = $.task(counter).times(y);
+        assertSame(a, b);
+        assertNotSame(a, c);
+        assertEquals(30, (int) $.task(task()).add(a, b).get() + c.get());
+        assertEquals(2, counter.calls.get());
+    }
+
+    @Test
+    public void memoizeOnlySameWiring() throws Exception {
+        $.setMemoizing(true);
+        Counter counter = new Counter(2);
+        CompletableFuture<Integer> a = $.task(counter).times(3);
+        CompletableFuture<Integer> b = $.task(counter).light().times(3);
+        CompletableFuture<Integer> c = $.task(counter).light().times(3);
+        CompletableFuture<Integer> d = $.task(counter).timeoutMs(10_000).times(3);
+        assertNotSame(a, b);
+        assertSame(b, c);
+        assertNotSame(a, d);
+        $.activateAndWait(a, b, c, d);
+        assertEquals(6, (int) d.get());
+        assertEquals(3, counter.calls.get());
+    }
+
+    @Test
+    public void memoizePerOrchestrator() throws Exception {
+        $.setMemoizing(true);
+        Orchestrator other = Orchestrator.create();
+        other.setMemoizing(true);
+        Counter counter = new Counter(2);
+        assertEquals(6, (int) $.task(counter).times(3).get());
+        assertEquals(6, (int) other.task(counter).times(3).get());
+        assertEquals(2, counter.calls.get());
+    }
+
+    @Test
+    public void memoizeGlobally() {
+        GlobalOrchestratorConfig.getConfig().setMemoizing(true);
+        assertTrue(Orchestrator.create().isMemoizing());
+    }
+
+    interface ILookup extends TaskInterface<ILookup> {
+        CompletableFuture<String> lookup(String key);
+
+        CompletableFuture<String> lookup(CompletableFuture<String> key);
+
+        CompletableFuture<String> brief(String key);
+
+        CompletableFuture<String> small(String key);
+
+        CompletableFuture<String> versioned(String key);
+    }
+
+    static class Lookup implements ILookup {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Cacheable(ttlMs = 60_000)
+        @Override
+        public CompletableFuture<String> lookup(String key) {
+            calls.incrementAndGet();
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("empty key");
+            }
+            return complete(key.toUpperCase());
+        }
+
+        @Cacheable(ttlMs = 60_000)
+        @Override
+        public CompletableFuture<String> lookup(CompletableFuture<String> key) {
+            return lookup(get(key));
+        }
+
+        @Cacheable(ttlMs = 20)
+        @Override
+        public CompletableFuture<String> brief(String key) {
+            return lookup(key);
+        }
+
+        @Cacheable(ttlMs = 60_000, maxEntries = 2)
+        @Override
+        public CompletableFuture<String> small(String key) {
+            return lookup(key);
+        }
+
+        @Override
+        public CompletableFuture<String> versioned(String key) {
+            return complete(key);
+        }
+    }
+
+    static class VersionedLookup extends Lookup {
+        static final AtomicInteger version = new AtomicInteger();
+
+        @Cacheable(ttlMs = 60_000, refreshAfterMs = 20)
+        @Override
+        public CompletableFuture<String> versioned(String key) {
+            return complete(key + version.incrementAndGet());
+        }
+    }
+
+    private String lookup(String key) throws Exception {
+        return Orchestrator.create().task(new Lookup()).lookup(key).get();
+    }
+
+    @Test
+    public void cacheAcrossOrchestrators() throws Exception {
+        Lookup.calls.set(0);
+        assertEquals("A", lookup("a"));
+        assertEquals("A", lookup("a"));
+        assertEquals("B", lookup("b"));
+        assertEquals(2, Lookup.calls.get());
+        ResultCache.Stats stats = ResultCache.getStats(Lookup.class, "lookup");
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void cacheHitFeedsDependents() throws Exception {
+        Lookup.calls.set(0);
+        lookup("c");
+        CompletableFuture<String> key = $.task(new Lookup()).lookup("c");
+        CompletableFuture<String> got = $.task(new Lookup()).lookup(key);
+        assertEquals("C", got.get());
+        assertEquals(2, Lookup.calls.get());  // Once for "c" and once for "C"
+    }
+
+    @Test
+    public void cacheFutureArgumentsByValue() throws Exception {
+        Lookup.calls.set(0);
+        assertEquals("D", $.task(new Lookup()).lookup($.fn(() -> "d")).get());
+        assertEquals("D", Orchestrator.create().task(new Lookup()).lookup(CompletableFuture.completedFuture("d")).get());
+        assertEquals(1, Lookup.calls.get());
+        assertEquals(1, ResultCache.getStats(Lookup.class, "lookup").getHitCount());
+    }
+
+    @Test
+    public void cacheExpires() throws Exception {
+        Lookup.calls.set(0);
+        Orchestrator.create().task(new Lookup()).brief("e").get();
+        Orchestrator.create().task(new Lookup()).brief("e").get();
+        assertEquals(1, Lookup.calls.get());
+        sleep(40);
+        Orchestrator.create().task(new Lookup()).brief("e").get();
+        assertEquals(2, Lookup.calls.get());
+    }
+
+    @Test
+    public void cacheEvictsLeastRecentlyUsed() throws Exception {
+        Lookup.calls.set(0);
+        for (String next : new String[]{"f", "g", "f", "h", "f", "g"}) {
+            Orchestrator.create().task(new Lookup()).small(next).get();
+        }
+        // The second g was evicted by h, since f had been used more recently
+        assertEquals(4, Lookup.calls.get());
+        ResultCache.Stats stats = ResultCache.getStats(Lookup.class, "small");
+        assertEquals(2, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void cacheBoundedUnderConcurrentPuts() throws Exception {
+        Method method = Lookup.class.getMethod("lookup", String.class);
+        ResultCache.Region region = ResultCache.region(Lookup.class, method, method.getAnnotation(Cacheable.class));
+        int threads = 4;
+        int perThread = 1000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    InvocationKey key = new InvocationKey(Lookup.class, method, new Object[]{"k" + (base + i)});
+                    region.put(key, "v");
+                    region.get(key);
+                }
+            });
+            writers[t].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            writers[t].start();
+        }
+        for (Thread next : writers) {
+            next.join();
+        }
+        assertNull(failure.get());
+        ResultCache.Stats stats = region.getStats();
+        assertTrue(stats.getSize() <= 1000 + threads);
+        assertEquals(threads * perThread, stats.getSize() + stats.getEvictionCount());
+    }
+
+        @Test
+    public void cacheSkipsExceptions() throws Exception {
+        Lookup.calls.set(0);
+        for (int i = 0; i < 2; i++) {
+            try {
+                lookup("");
+                fail("Expected exception");
+            } catch (IllegalArgumentException ignore) {
+            }
+        }
+        assertEquals(2, Lookup.calls.get());
+        assertEquals(0, ResultCache.getStats().getSize());
+    }
+
+    private String versioned(String key) throws Exception {
+        return Orchestrator.create().task(new VersionedLookup()).versioned(key).get();
+    }
+
+    @Test(timeout = 5000)
+    public void cacheRefreshAhead() throws Exception {
+        VersionedLookup.version.set(0);
+        assertEquals("v1", versioned("v"));
+        assertEquals("v1", versioned("v"));
+        sleep(40);
+        // Stale result is still returned, while a refresh is started
+        assertEquals("v1", versioned("v"));
+        while (VersionedLookup.version.get() < 2) {
+            sleep(5);
+        }
+        String got;
+        while ((got = versioned("v")).equals("v1")) {
+            sleep(5);
+        }
+        assertEquals("v2", got);
+        ResultCache.Stats stats = ResultCache.getStats(VersionedLookup.class, "versioned");
+        assertEquals(1, stats.getRefreshCount());
+        assertEquals(1, stats.getMissCount());
+    }
+
+    @Test(timeout = 5000)
+    public void cacheRefreshThroughRunnersWithoutInitializers() throws Exception {
+        VersionedLookup.version.set(0);
+        AtomicInteger initialized = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        GlobalOrchestratorConfig.getConfig().initializeWith((orchestrator, arg) -> initialized.incrementAndGet());
+        GlobalOrchestratorConfig.getConfig().lastInterceptWith(new TaskRunner() {
+            @Override
+            public Object before(TaskRun taskRun) {
+                return null;
+            }
+
+            @Override
+            public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
+                executed.incrementAndGet();
+                return taskRun.run();
+            }
+
+            @Override
+            public void onComplete(TaskRun taskRun, Object fromBefore, boolean doneOnExit) {
+            }
+        });
+        assertEquals("v1", versioned("v"));
+        sleep(40);
+        assertEquals("v1", versioned("v"));
+        while (VersionedLookup.version.get() < 2) {
+            sleep(5);
+        }
+        // Both calls were made through Orchestrators created here, while the refresh was seen by the runner too
+        assertEquals(2, initialized.get());
+        assertEquals(2, executed.get());
+    }
+
+    interface IFetcher extends TaskInterface<IFetcher> {
+        CompletableFuture<String> fetch(String key);
+    }
+
+    static class Fetcher implements IFetcher {
+        final CountDownLatch latch;
+        final AtomicInteger calls;
+
+        Fetcher(CountDownLatch latch, AtomicInteger calls) {
+            this.latch = latch;
+            this.calls = calls;
+        }
+
+        @SingleFlight
+        @Override
+        public CompletableFuture<String> fetch(String key) {
+            calls.incrementAndGet();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("empty key");
+            }
+            return complete(key.toUpperCase());
+        }
+    }
+
+    /**
+     * Waits for executions to leave the registry, which happens just after their CompletableFutures complete.
+     */
+    private static void assertNoFlights() {
+        for (int i = 0; i < 100 && SingleFlightRegistry.size() > 0; i++) {
+            sleep(5);
+        }
+        assertEquals(0, SingleFlightRegistry.size());
+    }
+
+    @Test(timeout = 5000)
+    public void singleFlight() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Orchestrator other = Orchestrator.create();
+        // Spawned, so that activation returns while the first execution is still running
+        CompletableFuture<String> a = $.activate($.task(new Fetcher(latch, calls)).runSpawned().fetch("k"));
+        CompletableFuture<String> b = other.activate(other.task(new Fetcher(latch, calls)).fetch("k"));
+        CompletableFuture<String> c = other.activate(other.task(new Fetcher(latch, calls)).runSpawned().fetch("j"));
+        assertFalse(b.isDone());
+        latch.countDown();
+        assertEquals("K", a.get());
+        assertSame(a.get(), b.get());
+        assertEquals("J", c.get());
+        assertEquals(2, calls.get());
+        assertNoFlights();
+
+        // Once complete, the task method is run again
+        assertEquals("K", Orchestrator.create().task(new Fetcher(latch, calls)).fetch("k").get());
+        assertEquals(3, calls.get());
+    }
+
+    @Test(timeout = 5000)
+    public void singleFlightException() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Orchestrator other = Orchestrator.create();
+        CompletableFuture<String> a = $.activate($.task(new Fetcher(latch, calls)).runSpawned().fetch(""));
+        CompletableFuture<String> b = other.activate(other.task(new Fetcher(latch, calls)).fetch(""));
+        latch.countDown();
+        for (CompletableFuture<String> next : Arrays.asList(a, b)) {
+            try {
+                next.get();
+                fail("Expected exception");
+            } catch (IllegalArgumentException ignore) {
+            }
+        }
+        assertEquals(1, calls.get());
+        assertNoFlights();
+    }
+
+    @Test(timeout = 5000)
+    public void singleFlightNotSharingRequestTimeout() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Orchestrator other = Orchestrator.create();
+        // Only the first call has a timeout, which the second should not inherit
+        CompletableFuture<String> a = $.activate($.task(new Fetcher(latch, calls)).timeoutMs(20).runSpawned().fetch("t"));
+        CompletableFuture<String> b = other.activate(other.task(new Fetcher(latch, calls)).runSpawned().fetch("t"));
+        try {
+            a.get();
+            fail("Expected timeout");
+        } catch (TimeoutExceededException ignore) {
+        }
+        assertFalse(b.isDone());
+        latch.countDown();
+        assertEquals("T", b.get());
+        assertEquals(2, calls.get());
+        assertNoFlights();
+    }
+}
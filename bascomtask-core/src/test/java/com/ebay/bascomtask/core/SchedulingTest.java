@@ -0,0 +1,334 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ebay.bascomtask.core.UberTask.task;
+import static org.junit.Assert.*;
+
+/**
+ * Tests choices of which tasks are run inline and which are spawned.
+ *
+ * @author Brendan McCarthy
+ */
+public class SchedulingTest extends BaseOrchestratorTest {
+
+    @After
+    public void clearTasks() {
+        UberTask.UberTasker.clearAndVerify();
+    }
+
+    /**
+     * Runs a graph where 'head' and 'side' are ready at the same time, and a slow task depends on 'head'.
+     *
+     * @return the slow task
+     */
+    private UberTask.UberTasker runChain(Orchestrator $) throws Exception {
+        UberTask.UberTasker slow = task().delayFor(40);
+        CompletableFuture<Integer> head = $.task(task()).name("cpHead").ret(1);
+        CompletableFuture<Integer> chain = $.task(slow).name("cpSlow").inc(head);
+        CompletableFuture<Integer> side = $.task(task()).name("cpSide").ret(2);
+        int got = $.task(task()).add(chain, side).get();
+        assertEquals(4, got);
+        return slow;
+    }
+
+    @Test
+    public void criticalPathKeptInCallingThread() throws Exception {
+        DurationStats.clear();
+        String main = Thread.currentThread().getName();
+
+        // Nothing known yet, so conflict is resolved as in WHEN_NEEDED and 'head' is spawned
+        $.setSpawnMode(SpawnMode.CRITICAL_PATH);
+        UberTask.UberTasker slow = runChain($);
+        assertNotEquals(main, slow.getThreadName());
+        assertTrue(DurationStats.averageCompletionNanos("cpSlow.inc") >= 40_000_000L);
+
+        // Now 'head' is known to lead to a longer path than 'side', so 'side' is spawned instead
+        Orchestrator $$ = Orchestrator.create();
+        $$.setSpawnMode(SpawnMode.CRITICAL_PATH);
+        slow = runChain($$);
+        assertEquals(main, slow.getThreadName());
+    }
+
+    @Test
+    public void durationsNotRecordedByDefault() throws Exception {
+        DurationStats.clear();
+        runChain($);
+        assertEquals(0, DurationStats.averageCompletionNanos("cpSlow.inc"));
+    }
+
+    @Test
+    public void durationsRecordedForCustomPolicy() throws Exception {
+        DurationStats.clear();
+        $.setSchedulingPolicy((taskRun, pending, orchestrator, mainThread)
+                -> SpawnMode.CRITICAL_PATH.decide(taskRun, pending, orchestrator, mainThread));
+        runChain($);
+        assertTrue(DurationStats.averageCompletionNanos("cpSlow.inc") >= 40_000_000L);
+    }
+
+    @Test
+    public void durationAverage() {
+        DurationStats.Average entry = new DurationStats.Average();
+        assertEquals(0, entry.getAverageNanos());
+        entry.record(800);
+        assertEquals(800, entry.getAverageNanos());
+        entry.record(0);
+        assertEquals(700, entry.getAverageNanos());
+        assertEquals(2, entry.getCount());
+    }
+
+    @Test
+    public void customPolicySpawnsEverything() throws Exception {
+        String main = Thread.currentThread().getName();
+        $.setSpawnMode(SpawnMode.WHEN_NEEDED_NO_REUSE); // Else the waiting main thread could pick up spawned tasks
+        $.setSchedulingPolicy((taskRun, pending, orchestrator, mainThread) -> SchedulingPolicy.Decision.SPAWN);
+        UberTask.UberTasker t1 = task();
+        UberTask.UberTasker t2 = task();
+        CompletableFuture<Integer> cf = $.task(t1).ret(1);
+        int got = $.task(t2).inc(cf).get();
+        assertEquals(2, got);
+        assertNotEquals(main, t1.getThreadName());
+        assertNotEquals(main, t2.getThreadName());
+        assertEquals(2, $.getCountOfThreadsSpawned());
+    }
+
+    @Test
+    public void customPolicyOverridesSpawnMode() throws Exception {
+        String main = Thread.currentThread().getName();
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        $.setSchedulingPolicy((taskRun, pending, orchestrator, mainThread) -> SchedulingPolicy.Decision.INLINE);
+        UberTask.UberTasker t1 = task();
+        UberTask.UberTasker t2 = task();
+        CompletableFuture<Integer> c1 = $.task(t1).ret(1);
+        CompletableFuture<Integer> c2 = $.task(t2).ret(2);
+        int got = $.task(task()).add(c1, c2).get();
+        assertEquals(3, got);
+        assertEquals(main, t1.getThreadName());
+        assertEquals(main, t2.getThreadName());
+        assertEquals(0, $.getCountOfThreadsSpawned());
+
+        // Reverts to the SpawnMode
+        $.setSchedulingPolicy(null);
+        UberTask.UberTasker t3 = task();
+        got = $.task(t3).ret(3).get();
+        assertEquals(3, got);
+        assertNotEquals(main, t3.getThreadName());
+    }
+
+    @Test
+    public void globalPolicy() {
+        SchedulingPolicy policy = SpawnMode.NEVER_SPAWN;
+        GlobalOrchestratorConfig.getConfig().setSchedulingPolicy(policy);
+        Orchestrator $$ = Orchestrator.create();
+        assertSame(policy, $$.getSchedulingPolicy());
+        GlobalOrchestratorConfig.getConfig().restoreConfigurationDefaults(null);
+        assertNull(GlobalOrchestratorConfig.getConfig().getSchedulingPolicy());
+    }
+
+    @Test
+    public void policySeesPending() throws Exception {
+        List<String> seen = new ArrayList<>();
+        $.setSchedulingPolicy((taskRun, pending, orchestrator, mainThread) -> {
+            synchronized (seen) {
+                seen.add(taskRun.getName() + ":" + (pending == null ? null : pending.getName()));
+            }
+            return SpawnMode.WHEN_NEEDED.decide(taskRun, pending, orchestrator, mainThread);
+        });
+        CompletableFuture<Integer> c1 = $.task(task()).name("p1").ret(1);
+        CompletableFuture<Integer> c2 = $.task(task()).name("p2").ret(2);
+        int got = $.task(task()).name("p3").add(c1, c2).get();
+        assertEquals(3, got);
+        assertEquals(Arrays.asList("p1.ret:null", "p2.ret:p1.ret", "p3.add:null"), seen);
+    }
+
+    /**
+     * Records the highest number of its own task methods running at once.
+     */
+    interface ITracker extends TaskInterface<ITracker> {
+        CompletableFuture<Integer> track(int v);
+    }
+
+    static class Tracker implements ITracker {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Integer> track(int v) {
+            int now = running.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            return complete(v);
+        }
+    }
+
+    @Test
+    public void maxConcurrency() throws Exception {
+        final int max = 2;
+        final int count = 6;
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        $.setMaxConcurrency(max);
+        Tracker tracker = new Tracker();
+        List<CompletableFuture<Integer>> cfs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cfs.add($.task(tracker).track(i));
+        }
+        List<Integer> got = $.activateAndWait(cfs);
+        assertEquals(count, got.size());
+        assertEquals(max, tracker.peak.get());
+        assertEquals(count, $.getCountOfThreadsSpawned());
+    }
+
+    @Test
+    public void maxConcurrencyUnlimitedByDefault() throws Exception {
+        final int count = 4;
+        $.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        assertEquals(0, $.getMaxConcurrency());
+        Tracker tracker = new Tracker();
+        List<CompletableFuture<Integer>> cfs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cfs.add($.task(tracker).track(i));
+        }
+        $.activateAndWait(cfs);
+        assertEquals(count, tracker.peak.get());
+    }
+
+    /**
+     * Blocks on a task that is not an argument, so it can be started before that task is.
+     */
+    interface IBlocker extends TaskInterface<IBlocker> {
+        CompletableFuture<Integer> plus(int v);
+    }
+
+    static class Blocker implements IBlocker {
+        CompletableFuture<Integer> target;
+
+        @Override
+        public CompletableFuture<Integer> plus(int v) {
+            return complete(v + get(target));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void maxConcurrencyWithBlockedTask() throws Exception {
+        // Main thread is not reused, so only the blocked thread itself can run the deferred target
+        $.setSpawnMode(SpawnMode.WHEN_NEEDED_NO_REUSE);
+        $.setMaxConcurrency(1);
+        Blocker blocker = new Blocker();
+        CompletableFuture<Integer> blocked = $.task(blocker).runSpawned().plus(1);
+        blocker.target = $.task(task()).runSpawned().ret(2);
+        int got = $.task(task()).add(blocked, blocker.target).get();
+        assertEquals(5, got);
+        assertEquals(1, $.getCountOfThreadsSpawned());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxConcurrencyNegative() {
+        $.setMaxConcurrency(-1);
+    }
+
+    private boolean ranInMainThread(Orchestrator $, String name, int delay) throws Exception {
+        UberTask.UberTasker t = task().delayFor(delay);
+        int got = $.task(t).name(name).ret(1).get();
+        assertEquals(1, got);
+        return Thread.currentThread().getName().equals(t.getThreadName());
+    }
+
+    private Engine adaptive() {
+        Engine engine = (Engine) Orchestrator.create();
+        engine.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        engine.setAdaptiveLight(5, TimeUnit.MILLISECONDS);
+        return engine;
+    }
+
+    /**
+     * Records execution times directly, so that results do not depend on how fast this machine runs tasks.
+     */
+    private static void recordExecutions(String key, int count, long duration, TimeUnit timeUnit) {
+        for (int i = 0; i < count; i++) {
+            DurationStats.entry(key).execution.record(timeUnit.toNanos(duration));
+        }
+    }
+
+    private static boolean isLight(CompletableFuture<?> cf) {
+        return ((BascomTaskFuture<?>) cf).getBinding().isLight();
+    }
+
+    @Test
+    public void adaptiveLight() {
+        DurationStats.clear();
+        Engine engine = adaptive();
+        for (int i = 0; i < Engine.ADAPTIVE_LIGHT_MIN_SAMPLES; i++) {
+            assertFalse(engine.isAdaptivelyLight("alFast.ret"));
+            recordExecutions("alFast.ret", 1, 100, TimeUnit.MICROSECONDS);
+        }
+        assertTrue(engine.isAdaptivelyLight("alFast.ret"));
+        // Calls are only wired, not activated, since lightness is determined from the recorded executions
+        assertTrue(isLight(engine.task(task(0)).name("alFast").ret(1)));
+        // Explicit spawn request overrides adaptive lightness
+        assertFalse(isLight(engine.task(task(0)).name("alFast").runSpawned().ret(1)));
+    }
+
+    @Test
+    public void adaptiveLightSlowNeverLight() {
+        DurationStats.clear();
+        recordExecutions("alSlow.ret", Engine.ADAPTIVE_LIGHT_MIN_SAMPLES + 1, 10, TimeUnit.MILLISECONDS);
+        assertFalse(adaptive().isAdaptivelyLight("alSlow.ret"));
+    }
+
+    @Test
+    public void adaptiveLightRevertsWhenSlow() {
+        DurationStats.clear();
+        Engine engine = adaptive();
+        recordExecutions("alChange.ret", Engine.ADAPTIVE_LIGHT_MIN_SAMPLES, 0, TimeUnit.MILLISECONDS);
+        assertTrue(engine.isAdaptivelyLight("alChange.ret"));
+        // A slow execution moves the average closer to the slow duration, here past the threshold
+        recordExecutions("alChange.ret", 1, 60, TimeUnit.MILLISECONDS);
+        assertFalse(engine.isAdaptivelyLight("alChange.ret"));
+    }
+
+    @Test
+    public void adaptiveLightRecordsExecutions() throws Exception {
+        DurationStats.clear();
+        for (int i = 0; i < Engine.ADAPTIVE_LIGHT_MIN_SAMPLES; i++) {
+            ranInMainThread(adaptive(), "alRecorded", 0);
+        }
+        assertEquals(Engine.ADAPTIVE_LIGHT_MIN_SAMPLES, DurationStats.find("alRecorded.ret").execution.getCount());
+    }
+
+    @Test
+    public void adaptiveLightDisabledByDefault() throws Exception {
+        DurationStats.clear();
+        Orchestrator $$ = Orchestrator.create();
+        $$.setSpawnMode(SpawnMode.ALWAYS_SPAWN);
+        assertEquals(0, $$.getAdaptiveLightNanos());
+        for (int i = 0; i < 6; i++) {
+            assertFalse(ranInMainThread($$, "alDefault", 0));
+        }
+        assertNull(DurationStats.find("alDefault.ret"));
+    }
+}
@@ -325,4 +325,93 @@ public class TaskRunnerTest {
         $.task(task()).light().ret(1).get();
         assertTrue(runner.lastTaskWasLight);
     }
+
+    static class CountingRunner implements TaskRunner {
+        final AtomicInteger beforeHits = new AtomicInteger(0);
+        final AtomicInteger execHits = new AtomicInteger(0);
+        private final int times;
+
+        CountingRunner(int times) {
+            this.times = times;
+        }
+
+        @Override
+        public Object before(TaskRun taskRun) {
+            beforeHits.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
+            execHits.incrementAndGet();
+            Object rv = null;
+            for (int i = 0; i < times; i++) {
+                rv = taskRun.run();
+            }
+            return rv;
+        }
+
+        @Override
+        public void onComplete(TaskRun taskRun, Object fromBefore, boolean doneOnExit) {
+        }
+    }
+
+    @Test
+    public void runnerRunsTwice() throws Exception {
+        CountingRunner outer = new CountingRunner(2);
+        CountingRunner inner = new CountingRunner(1);
+        Orchestrator $ = Orchestrator.create();
+        $.lastInterceptWith(outer);
+        $.lastInterceptWith(inner);
+        assertEquals(1, (int) $.task(task(2)).ret(1).get());
+        assertEquals(1, outer.beforeHits.get());
+        assertEquals(1, outer.execHits.get());
+        assertEquals(1, inner.beforeHits.get());
+        assertEquals(2, inner.execHits.get());
+    }
+
+    static class DeferringRunner implements TaskRunner {
+        volatile Thread ranIn = null;
+
+        @Override
+        public Object before(TaskRun taskRun) {
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object executeTaskMethod(TaskRun taskRun, Thread parentThread, Object fromBefore) {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            // TaskRun.run() is called after this method has returned, from another thread
+            Thread thread = new Thread(() -> {
+                ranIn = Thread.currentThread();
+                ((CompletableFuture<Object>) taskRun.run()).whenComplete((v, t) -> {
+                    if (t == null) {
+                        result.complete(v);
+                    } else {
+                        result.completeExceptionally(t);
+                    }
+                });
+            });
+            thread.start();
+            return result;
+        }
+
+        @Override
+        public void onComplete(TaskRun taskRun, Object fromBefore, boolean doneOnExit) {
+        }
+    }
+
+    @Test
+    public void runnerRunsLaterInOtherThread() throws Exception {
+        DeferringRunner outer = new DeferringRunner();
+        CountingRunner inner = new CountingRunner(1);
+        Orchestrator $ = Orchestrator.create();
+        $.lastInterceptWith(outer);
+        $.lastInterceptWith(inner);
+        UberTasker task = task();
+        assertEquals(1, (int) $.task(task).ret(1).get());
+        assertEquals(1, inner.execHits.get());
+        assertEquals(outer.ranIn.getName(), task.getThreadName());
+    }
 }
@@ -0,0 +1,170 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.core;
+
+import com.ebay.bascomtask.annotations.Timeout;
+import com.ebay.bascomtask.exceptions.TimeoutExceededException;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests timeouts on individual task methods, and how activation timeouts apply to work started from task methods.
+ *
+ * @author Brendan McCarthy
+ */
+public class TimeoutTest extends BaseOrchestratorTest {
+
+    interface ISlow extends TaskInterface<ISlow> {
+        CompletableFuture<Integer> slow(int delayMs);
+
+        CompletableFuture<Integer> limited(int delayMs);
+
+        CompletableFuture<Integer> inc(CompletableFuture<Integer> x);
+
+        CompletableFuture<Integer> nested(int delayMs);
+    }
+
+    static class Slow implements ISlow {
+        @Override
+        public CompletableFuture<Integer> slow(int delayMs) {
+            return complete(sleepThen(delayMs, 1));
+        }
+
+        @Timeout(20)
+        @Override
+        public CompletableFuture<Integer> limited(int delayMs) {
+            return slow(delayMs);
+        }
+
+        @Override
+        public CompletableFuture<Integer> inc(CompletableFuture<Integer> x) {
+            return complete(get(x) + 1);
+        }
+
+        @Override
+        public CompletableFuture<Integer> nested(int delayMs) {
+            Orchestrator nested = Orchestrator.create();
+            CompletableFuture<Integer> first = nested.task(new Slow()).slow(delayMs);
+            CompletableFuture<Integer> second = nested.task(new Slow()).inc(first);
+            return complete(get(second));
+        }
+    }
+
+    private static void assertTimedOut(CompletableFuture<?> cf) throws Exception {
+        try {
+            cf.get();
+            fail("No timeout");
+        } catch (TimeoutExceededException ignore) {
+            // expected
+        }
+    }
+
+    @Test
+    public void annotated() throws Exception {
+        long start = System.currentTimeMillis();
+        assertTimedOut($.task(new Slow()).runSpawned().limited(500));
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Took " + duration, duration < 250);
+    }
+
+    @Test
+    public void annotatedNotReached() throws Exception {
+        assertEquals(1, (int) $.task(new Slow()).limited(0).get());
+    }
+
+    @Test
+    public void wired() throws Exception {
+        long start = System.currentTimeMillis();
+        assertTimedOut($.task(new Slow()).timeoutMs(20).runSpawned().slow(500));
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Took " + duration, duration < 250);
+    }
+
+    @Test
+    public void wiredOverridesAnnotation() throws Exception {
+        assertEquals(1, (int) $.task(new Slow()).timeoutMs(1000).limited(50).get());
+    }
+
+    @Test
+    public void notHeldBackByMaxConcurrency() throws Exception {
+        $.setSpawnMode(SpawnMode.WHEN_NEEDED_NO_REUSE); // Else the waiting main thread could pick up the fault
+        $.setMaxConcurrency(1);
+        long start = System.currentTimeMillis();
+        // Occupies the only spawn slot until well after its timeout
+        assertTimedOut($.task(new Slow()).timeoutMs(20).runSpawned().slow(300));
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Took " + duration, duration < 200);
+    }
+
+    @Test
+    public void onlyDependentsFault() throws Exception {
+        ISlow task = $.task(new Slow()).timeoutMs(20);
+        CompletableFuture<Integer> timedOut = task.slow(200);
+        CompletableFuture<Integer> dependent = $.task(new Slow()).inc(timedOut);
+        CompletableFuture<Integer> other = $.task(new Slow()).runSpawned().slow(50);
+        $.activate(dependent, other);
+        assertTimedOut(dependent);
+        assertTimedOut(timedOut);
+        assertEquals(1, (int) other.get());
+    }
+
+    @Test
+    public void nestedWithinActivation() throws Exception {
+        // Nested task would otherwise be started after the first one completes
+        CompletableFuture<Integer> cf = $.task(new Slow()).nested(60);
+        $.activate(20, cf);
+        assertTimedOut(cf);
+    }
+
+    @Test
+    public void nestedWithoutTimeout() throws Exception {
+        CompletableFuture<Integer> cf = $.task(new Slow()).nested(60);
+        $.activate(cf);
+        assertEquals(2, (int) cf.get());
+    }
+
+    @Test
+    public void waitUsesRemainingBudget() throws Exception {
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+        try {
+            // Each would complete within the budget if waited on separately
+            CompletableFuture<Integer> cf1 = new CompletableFuture<>();
+            CompletableFuture<Integer> cf2 = new CompletableFuture<>();
+            CompletableFuture<Integer> cf3 = new CompletableFuture<>();
+            ses.schedule(() -> cf1.complete(1), 40, TimeUnit.MILLISECONDS);
+            ses.schedule(() -> cf2.complete(2), 80, TimeUnit.MILLISECONDS);
+            ses.schedule(() -> cf3.complete(3), 120, TimeUnit.MILLISECONDS);
+            long start = System.currentTimeMillis();
+            try {
+                $.activateAndWait(60, cf1, cf2, cf3);
+                fail("No timeout");
+            } catch (TimeoutExceededException ignore) {
+                // expected
+            }
+            long duration = System.currentTimeMillis() - start;
+            assertTrue("Took " + duration, duration < 110);
+        } finally {
+            ses.shutdownNow();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.ebay.bascomtask.core;
 
 import com.ebay.bascomtask.annotations.Light;
+import com.ebay.bascomtask.exceptions.InvalidTaskException;
 import org.junit.Test;
 
 import java.lang.reflect.Method;
@@ -71,4 +72,35 @@ public class UtilsTest extends BaseOrchestratorTest {
         Override ann = Utils.getAnnotation(sub,method,Override.class);
         assertNull(ann);
     }
+
+    @Test
+    public void taskClassInfo() throws Exception {
+        TaskClassInfo info = TaskClassInfo.of(IThreadTask.ThreadTask.class);
+        assertSame(info, TaskClassInfo.of(IThreadTask.ThreadTask.class));
+        assertEquals(IThreadTask.class, info.getTaskInterface());
+
+        Method annotated = IThreadTask.class.getMethod("computeAnnotated");
+        Method notAnnotated = IThreadTask.class.getMethod("computeNotAnnotated");
+        assertSame(info.getMethodInfo(annotated), info.getMethodInfo(annotated));
+        assertTrue(info.getMethodInfo(annotated).light);
+        assertFalse(info.getMethodInfo(notAnnotated).light);
+    }
+
+    @Test(expected = InvalidTaskException.class)
+    public void taskClassInfoNotTask() {
+        TaskClassInfo.of(Sub.class).getTaskInterface();
+    }
+
+    @Test
+    public void warmUp() {
+        Orchestrator.warmUp(IThreadTask.ThreadTask.class, IThreadTask.ThreadTask.class);
+        IThreadTask.ThreadTask task = new IThreadTask.ThreadTask();
+        assertEquals(Thread.currentThread(), $.task(task).computeAnnotated().join());
+        assertTrue(task.calledAnnotated);
+    }
+
+    @Test(expected = InvalidTaskException.class)
+    public void warmUpNotTask() {
+        Orchestrator.warmUp(Sub.class);
+    }
 }
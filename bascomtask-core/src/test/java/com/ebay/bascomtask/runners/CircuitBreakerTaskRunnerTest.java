@@ -0,0 +1,192 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.runners;
+
+import com.ebay.bascomtask.exceptions.CircuitBreakerOpenException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests CircuitBreakerTaskRunner.
+ *
+ * @author Brendan McCarthy
+ */
+public class CircuitBreakerTaskRunnerTest {
+
+    private static final String KEY = "the.task";
+
+    private final CircuitBreakerTaskRunner runner = new CircuitBreakerTaskRunner();
+
+    /**
+     * Counts calls, and responds with whatever the current supplier returns or throws.
+     */
+    private static class FlakyTaskRun extends MockTaskRun {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Supplier<Object> response = () -> CompletableFuture.completedFuture(1);
+
+        FlakyTaskRun() {
+            super("the", "task");
+        }
+
+        @Override
+        public Object run() {
+            calls.incrementAndGet();
+            return response.get();
+        }
+    }
+
+    private final FlakyTaskRun taskRun = new FlakyTaskRun();
+
+    @Before
+    public void before() {
+        runner.setMinimumCalls(4);
+        runner.setOpenMs(50);
+    }
+
+    private Object call() {
+        return runner.executeTaskMethod(taskRun, Thread.currentThread(), runner.before(taskRun));
+    }
+
+    private void failCalls(int times) {
+        taskRun.response = () -> {
+            throw new IllegalStateException("down");
+        };
+        for (int i = 0; i < times; i++) {
+            try {
+                call();
+                fail("No exception");
+            } catch (IllegalStateException ignore) {
+                // expected
+            }
+        }
+    }
+
+    private void assertOpen() {
+        try {
+            call();
+            fail("Not open");
+        } catch (CircuitBreakerOpenException e) {
+            assertEquals("Circuit breaker open for " + KEY, e.getMessage());
+        }
+    }
+
+    @Test
+    public void closedBelowMinimumCalls() {
+        failCalls(3);
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState("never.called"));
+    }
+
+    @Test
+    public void opensOnFailureRate() {
+        call();
+        call();
+        failCalls(2);
+        assertEquals(CircuitBreakerTaskRunner.State.OPEN, runner.getState(KEY));
+        int calls = taskRun.calls.get();
+        assertOpen();
+        assertEquals(calls, taskRun.calls.get());
+    }
+
+    @Test
+    public void closedBelowFailureRate() {
+        call();
+        call();
+        call();
+        failCalls(1);
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+    }
+
+    @Test
+    public void asyncFailuresCounted() {
+        CompletableFuture<Object> cf = new CompletableFuture<>();
+        taskRun.response = () -> cf;
+        for (int i = 0; i < 4; i++) {
+            assertSame(cf, call());
+        }
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+        cf.completeExceptionally(new IllegalStateException("down"));
+        assertEquals(CircuitBreakerTaskRunner.State.OPEN, runner.getState(KEY));
+    }
+
+    @Test
+    public void opensOnSlowCalls() throws Exception {
+        runner.setSlowCallMs(5);
+        runner.setSlowCallRateThreshold(0.5);
+        taskRun.response = () -> {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return CompletableFuture.completedFuture(1);
+        };
+        for (int i = 0; i < 4; i++) {
+            call();
+        }
+        assertEquals(CircuitBreakerTaskRunner.State.OPEN, runner.getState(KEY));
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        runner.setFallback(tr -> KEY.equals(tr.getTaskPlusMethodName()) ? CompletableFuture.completedFuture(-1) : null);
+        failCalls(4);
+        Object rv = call();
+        assertEquals(-1, ((CompletableFuture<?>) rv).get());
+        assertEquals(4, taskRun.calls.get());
+    }
+
+    @Test
+    public void trialSuccessCloses() throws Exception {
+        failCalls(4);
+        assertOpen();
+        Thread.sleep(60);
+        CompletableFuture<Object> trial = new CompletableFuture<>();
+        taskRun.response = () -> trial;
+        call();
+        assertEquals(CircuitBreakerTaskRunner.State.HALF_OPEN, runner.getState(KEY));
+        assertOpen();  // Only one trial at a time
+        trial.complete(1);
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+        failCalls(3);  // Counts start again
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+    }
+
+    @Test
+    public void trialFailureReopens() throws Exception {
+        failCalls(4);
+        Thread.sleep(60);
+        failCalls(1);
+        assertEquals(CircuitBreakerTaskRunner.State.OPEN, runner.getState(KEY));
+        assertOpen();
+    }
+
+    @Test
+    public void windowExpires() throws Exception {
+        runner.setWindowMs(30);
+        failCalls(3);
+        Thread.sleep(40);
+        failCalls(1);
+        assertEquals(CircuitBreakerTaskRunner.State.CLOSED, runner.getState(KEY));
+    }
+}
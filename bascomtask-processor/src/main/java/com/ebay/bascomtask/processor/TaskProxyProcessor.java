@@ -0,0 +1,512 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates, for each interface extending TaskInterface in the sources being compiled, a class implementing that
+ * interface that BascomTask uses in place of a {@link java.lang.reflect.Proxy} when wrapping tasks. Each generated
+ * method calls the framework or the user task directly, with no reflective dispatch. The generated classes are
+ * registered for {@link java.util.ServiceLoader} as TaskProxyFactory implementations, and are listed
+ * in a GraalVM native-image reflection configuration so that no hand-written configuration is needed for them.
+ *
+ * <p>Interfaces that cannot be implemented from their own package, or that have type parameters, are skipped with
+ * a note, and continue to be wrapped with a reflective Proxy at runtime.
+ *
+ * @author Brendan McCarthy
+ */
+@SupportedAnnotationTypes("*")
+public class TaskProxyProcessor extends AbstractProcessor {
+    static final String TASK_INTERFACE = "com.ebay.bascomtask.core.TaskInterface";
+    static final String FACTORY_INTERFACE = "com.ebay.bascomtask.core.TaskProxyFactory";
+    static final String BASE_CLASS = "com.ebay.bascomtask.core.GeneratedTaskProxy";
+    static final String SUFFIX = "_BascomTaskProxy";
+    static final String SERVICES_FILE = "META-INF/services/" + FACTORY_INTERFACE;
+    static final String REFLECT_CONFIG_FILE = "META-INF/native-image/bascomtask-generated/reflect-config.json";
+    static final String TASK_METHOD = "com.ebay.bascomtask.core.TaskMethod";
+
+    // Methods handled by the framework rather than the user task, matched by name alone as the framework does
+    private static final Set<String> WRAPPER_METHODS = new HashSet<>(Arrays.asList(
+            "hashCode", "equals", "toString", "name", "getName", "light", "runSpawned", "runOn", "activate", "timeoutMs"));
+
+    // Signatures of the Object methods that every generated class implements
+    private static final Set<String> OBJECT_SIGNATURES = new HashSet<>(Arrays.asList(
+            "hashCode()", "equals(java.lang.Object)", "toString()"));
+
+    /**
+     * How a generated method passes on a call, which must match the way the framework handles that method when
+     * called through a Proxy.
+     */
+    private enum Dispatch {
+        // Handled by the framework, e.g. TaskInterface wiring methods
+        WRAPPER,
+        // Returns a CompletableFuture, so a binding is created for it to be executed later
+        TASK,
+        // Called immediately on the user task
+        DIRECT
+    }
+
+    // Binary names of generated factories, and of task interfaces and their supertypes, across all rounds
+    private final Set<String> factories = new TreeSet<>();
+    private final Set<String> reflected = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement taskInterface = elements.getTypeElement(TASK_INTERFACE);
+        if (taskInterface == null) {
+            return false;  // bascomtask-core not on the classpath, so nothing to do
+        }
+        if (roundEnv.processingOver()) {
+            writeResources();
+        } else {
+            List<TypeElement> found = new ArrayList<>();
+            for (TypeElement next : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                collect(next, taskInterface, found);
+            }
+            for (TypeElement next : found) {
+                generate(next);
+            }
+        }
+        return false;
+    }
+
+    private void collect(TypeElement type, TypeElement taskInterface, List<TypeElement> found) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind() == ElementKind.INTERFACE && !type.equals(taskInterface)
+                && types.isAssignable(types.erasure(type.asType()), types.erasure(taskInterface.asType()))) {
+            found.add(type);
+        }
+        for (TypeElement next : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collect(next, taskInterface, found);
+        }
+    }
+
+    private void note(TypeElement type, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "BascomTask will use a reflective Proxy for " + type.getQualifiedName() + ": " + msg, type);
+    }
+
+    private void generate(TypeElement iface) {
+        Elements elements = processingEnv.getElementUtils();
+        PackageElement pkg = elements.getPackageOf(iface);
+        if (!iface.getTypeParameters().isEmpty()) {
+            note(iface, "it has type parameters");
+            return;
+        }
+        if (!isAccessibleFrom(iface, pkg)) {
+            note(iface, "it is not accessible from its package");
+            return;
+        }
+
+        List<ExecutableElement> methods = collectMethods(iface);
+        for (ExecutableElement next : methods) {
+            TypeElement declaring = (TypeElement) next.getEnclosingElement();
+            if (!isAccessibleFrom(declaring, pkg)) {
+                note(iface, "supertype " + declaring.getQualifiedName() + " is not accessible from its package");
+                return;
+            }
+        }
+
+        String simpleName = flatName(iface) + SUFFIX;
+        String pkgName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String qualifiedName = pkgName.isEmpty() ? simpleName : pkgName + "." + simpleName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, iface);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                writeSource(out, pkgName, simpleName, iface, methods);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to generate " + qualifiedName + ": " + e, iface);
+            return;
+        }
+        factories.add(qualifiedName + "$Factory");
+        reflected.add(elements.getBinaryName(iface).toString());
+        for (ExecutableElement next : methods) {
+            reflected.add(elements.getBinaryName((TypeElement) next.getEnclosingElement()).toString());
+        }
+    }
+
+    /**
+     * Returns whether a type can be named from code in the given package.
+     */
+    private static boolean isAccessibleFrom(TypeElement type, PackageElement pkg) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !pkg.equals(getPackage(e))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static PackageElement getPackage(Element e) {
+        while (!(e instanceof PackageElement)) {
+            e = e.getEnclosingElement();
+        }
+        return (PackageElement) e;
+    }
+
+    /**
+     * Returns a name for generated code that is unique within the package even for nested interfaces.
+     */
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element enclosing = type.getEnclosingElement();
+        if (enclosing instanceof TypeElement) {
+            return flatName((TypeElement) enclosing) + "_" + name;
+        }
+        return name;
+    }
+
+    /**
+     * Collects the abstract and default methods of an interface, including inherited ones but excluding those of
+     * Object, keeping only one method for each signature.
+     */
+    private List<ExecutableElement> collectMethods(TypeElement iface) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType ifaceType = (DeclaredType) iface.asType();
+        Map<String, ExecutableElement> bySignature = new LinkedHashMap<>();
+        for (ExecutableElement next : ElementFilter.methodsIn(elements.getAllMembers(iface))) {
+            Set<Modifier> modifiers = next.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            TypeElement declaring = (TypeElement) next.getEnclosingElement();
+            if (declaring.getQualifiedName().contentEquals("java.lang.Object")) {
+                continue;
+            }
+            String signature = next.getSimpleName() + erasedParameterTypes(next);
+            if (OBJECT_SIGNATURES.contains(signature)) {
+                continue;  // Redeclared in an interface, but still implemented as for Object
+            }
+            ExecutableElement prev = bySignature.get(signature);
+            if (prev == null) {
+                bySignature.put(signature, next);
+            } else {
+                // Keep the one with the more specific return type, which is then valid for both
+                TypeMirror prevReturn = ((ExecutableType) types.asMemberOf(ifaceType, prev)).getReturnType();
+                TypeMirror nextReturn = ((ExecutableType) types.asMemberOf(ifaceType, next)).getReturnType();
+                if (types.isSubtype(nextReturn, prevReturn) && !types.isSameType(nextReturn, prevReturn)) {
+                    bySignature.put(signature, next);
+                }
+            }
+        }
+        return new ArrayList<>(bySignature.values());
+    }
+
+    private String erasedParameterTypes(ExecutableElement method) {
+        Types types = processingEnv.getTypeUtils();
+        StringBuilder sb = new StringBuilder();
+        sb.append('(');
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(types.erasure(method.getParameters().get(i).asType()));
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+    private void writeSource(PrintWriter out, String pkgName, String simpleName, TypeElement iface,
+                             List<ExecutableElement> methods) {
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType ifaceType = (DeclaredType) iface.asType();
+        String ifaceName = iface.getQualifiedName().toString();
+
+        if (!pkgName.isEmpty()) {
+            out.println("package " + pkgName + ";");
+            out.println();
+        }
+        out.println("/**");
+        out.println(" * Generated by " + TaskProxyProcessor.class.getName() + " for {@link " + ifaceName + "}.");
+        out.println(" * Do not edit.");
+        out.println(" */");
+        out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        out.println("public final class " + simpleName + " extends " + BASE_CLASS + " implements " + ifaceName + " {");
+
+        out.println("    private static final " + TASK_METHOD + " m0 = taskMethod(java.lang.Object.class, \"hashCode\");");
+        out.println("    private static final " + TASK_METHOD + " m1 = taskMethod(java.lang.Object.class, \"equals\", java.lang.Object.class);");
+        out.println("    private static final " + TASK_METHOD + " m2 = taskMethod(java.lang.Object.class, \"toString\");");
+        List<Dispatch> dispatches = new ArrayList<>();
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            Dispatch dispatch = dispatchOf(method, (ExecutableType) types.asMemberOf(ifaceType, method));
+            dispatches.add(dispatch);
+            if (dispatch == Dispatch.DIRECT) {
+                continue;  // Called on the user task without involving the framework
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append("    private static final ").append(TASK_METHOD).append(" m").append(i + 3).append(" = taskMethod(")
+                    .append(types.erasure(method.getEnclosingElement().asType())).append(".class, \"")
+                    .append(method.getSimpleName()).append('"');
+            for (TypeMirror next : ((ExecutableType) method.asType()).getParameterTypes()) {
+                sb.append(", ").append(types.erasure(next)).append(".class");
+            }
+            sb.append(");");
+            out.println(sb);
+        }
+        out.println();
+        out.println("    private final " + ifaceName + " original;");
+        out.println();
+
+        out.println("    public " + simpleName + "(java.lang.reflect.InvocationHandler handler) {");
+        out.println("        super(handler);");
+        out.println("        this.original = (" + ifaceName + ") original(handler);");
+        out.println("    }");
+
+        writeObjectMethod(out, "int", "hashCode", "", "m0", "null");
+        writeObjectMethod(out, "boolean", "equals", "java.lang.Object a0", "m1", "new Object[]{a0}");
+        writeObjectMethod(out, "java.lang.String", "toString", "", "m2", "null");
+
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            writeMethod(out, method, (ExecutableType) types.asMemberOf(ifaceType, method), dispatches.get(i), "m" + (i + 3));
+        }
+
+        out.println();
+        out.println("    /**");
+        out.println("     * Registered for {@link java.util.ServiceLoader}.");
+        out.println("     */");
+        out.println("    public static final class Factory implements " + FACTORY_INTERFACE + " {");
+        out.println("        @Override");
+        out.println("        public Class<?> getTaskInterface() {");
+        out.println("            return " + ifaceName + ".class;");
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + BASE_CLASS + " newProxy(java.lang.reflect.InvocationHandler handler) {");
+        out.println("            return new " + simpleName + "(handler);");
+        out.println("        }");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private static void writeObjectMethod(PrintWriter out, String returnType, String name, String params,
+                                          String field, String args) {
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + returnType + " " + name + "(" + params + ") {");
+        out.println("        try {");
+        out.println("            return (" + boxed(returnType) + ") dispatch(" + field + ", " + args + ");");
+        out.println("        } catch (RuntimeException | Error e) {");
+        out.println("            throw e;");
+        out.println("        } catch (Throwable t) {");
+        out.println("            throw undeclared(t);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Determines how a method is handled, in the same way as the framework does for calls through a Proxy.
+     */
+    private Dispatch dispatchOf(ExecutableElement method, ExecutableType type) {
+        if (WRAPPER_METHODS.contains(method.getSimpleName().toString())) {
+            return Dispatch.WRAPPER;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror returnType = types.erasure(type.getReturnType());
+        TypeElement cf = processingEnv.getElementUtils().getTypeElement("java.util.concurrent.CompletableFuture");
+        if (returnType.getKind() == TypeKind.DECLARED && types.isSubtype(returnType, types.erasure(cf.asType()))) {
+            return Dispatch.TASK;
+        }
+        return Dispatch.DIRECT;
+    }
+
+    private void writeMethod(PrintWriter out, ExecutableElement method, ExecutableType type, Dispatch dispatch,
+                             String field) {
+        StringBuilder sig = new StringBuilder();
+        sig.append("    public ");
+        List<? extends TypeVariable> typeVariables = type.getTypeVariables();
+        if (!typeVariables.isEmpty()) {
+            sig.append('<');
+            for (int i = 0; i < typeVariables.size(); i++) {
+                if (i > 0) {
+                    sig.append(", ");
+                }
+                TypeParameterElement param = (TypeParameterElement) typeVariables.get(i).asElement();
+                sig.append(param.getSimpleName());
+                List<? extends TypeMirror> bounds = param.getBounds();
+                if (!(bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object"))) {
+                    for (int j = 0; j < bounds.size(); j++) {
+                        sig.append(j == 0 ? " extends " : " & ").append(bounds.get(j));
+                    }
+                }
+            }
+            sig.append("> ");
+        }
+        TypeMirror returnType = type.getReturnType();
+        sig.append(returnType).append(' ').append(method.getSimpleName()).append('(');
+        List<? extends TypeMirror> paramTypes = type.getParameterTypes();
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < paramTypes.size(); i++) {
+            if (i > 0) {
+                sig.append(", ");
+                args.append(", ");
+            }
+            TypeMirror paramType = paramTypes.get(i);
+            if (method.isVarArgs() && i == paramTypes.size() - 1) {
+                String array = paramType.toString();
+                sig.append(array, 0, array.length() - 2).append("...");
+            } else {
+                sig.append(paramType);
+            }
+            sig.append(" a").append(i);
+            args.append('a').append(i);
+        }
+        sig.append(')');
+        List<? extends TypeMirror> thrown = type.getThrownTypes();
+        for (int i = 0; i < thrown.size(); i++) {
+            sig.append(i == 0 ? " throws " : ", ").append(thrown.get(i));
+        }
+        sig.append(" {");
+
+        String argArray = paramTypes.isEmpty() ? "null" : "new Object[]{" + args + "}";
+
+        out.println();
+        out.println("    @Override");
+        out.println(sig);
+        if (dispatch == Dispatch.DIRECT) {
+            String call = "original." + method.getSimpleName() + "(" + args + ");";
+            out.println("        " + (returnType.getKind() == TypeKind.VOID ? call : "return " + call));
+            out.println("    }");
+            return;
+        }
+        if (dispatch == Dispatch.TASK) {
+            out.println("        return (" + returnType + ") dispatchTask(" + field + ", " + argArray + ");");
+            out.println("    }");
+            return;
+        }
+        String call = "dispatch(" + field + ", " + argArray + ")";
+        out.println("        try {");
+        if (returnType.getKind() == TypeKind.VOID) {
+            out.println("            " + call + ";");
+        } else {
+            out.println("            return (" + boxed(returnType.toString()) + ") " + call + ";");
+        }
+        out.println("        } catch (RuntimeException | Error e) {");
+        out.println("            throw e;");
+        out.println("        } catch (Throwable t) {");
+        for (TypeMirror next : thrown) {
+            out.println("            if (t instanceof " + processingEnv.getTypeUtils().erasure(next) + ") {");
+            out.println("                throw (" + next + ") t;");
+            out.println("            }");
+        }
+        out.println("            throw undeclared(t);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static String boxed(String type) {
+        switch (type) {
+            case "boolean":
+                return "java.lang.Boolean";
+            case "byte":
+                return "java.lang.Byte";
+            case "char":
+                return "java.lang.Character";
+            case "short":
+                return "java.lang.Short";
+            case "int":
+                return "java.lang.Integer";
+            case "long":
+                return "java.lang.Long";
+            case "float":
+                return "java.lang.Float";
+            case "double":
+                return "java.lang.Double";
+            default:
+                return type;
+        }
+    }
+
+    private void writeResources() {
+        if (factories.isEmpty()) {
+            return;
+        }
+        Filer filer = processingEnv.getFiler();
+        try {
+            FileObject services = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            try (Writer writer = services.openWriter()) {
+                for (String next : factories) {
+                    writer.write(next);
+                    writer.write('\n');
+                }
+            }
+            // Task methods are looked up, and invoked through MethodHandles, by the framework even though no
+            // Proxy is created
+            FileObject config = filer.createResource(StandardLocation.CLASS_OUTPUT, "", REFLECT_CONFIG_FILE);
+            try (Writer writer = config.openWriter()) {
+                writer.write("[\n");
+                int count = 0;
+                for (String next : reflected) {
+                    writer.write(count++ == 0 ? "" : ",\n");
+                    writer.write("  {\"name\": \"" + next + "\", \"allPublicMethods\": true}");
+                }
+                writer.write("\n]\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write resources: " + e);
+        }
+    }
+}
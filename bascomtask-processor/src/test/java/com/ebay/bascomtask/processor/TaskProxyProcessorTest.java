@@ -0,0 +1,183 @@
+/*-**********************************************************************
+ Copyright 2018 eBay Inc.
+ Author/Developer: Brendan McCarthy
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ https://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ **************************************************************************/
+package com.ebay.bascomtask.processor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the annotation processor by compiling sample tasks with it, then running them with the generated code.
+ *
+ * @author Brendan McCarthy
+ */
+public class TaskProxyProcessorTest {
+
+    private static final String ADDER =
+            "package sample;\n" +
+            "import com.ebay.bascomtask.core.TaskInterface;\n" +
+            "import java.util.concurrent.CompletableFuture;\n" +
+            "public interface IAdder extends TaskInterface<IAdder> {\n" +
+            "    CompletableFuture<Integer> add(CompletableFuture<Integer> x, int y);\n" +
+            "    <T> CompletableFuture<T> echo(T value);\n" +
+            "    int direct(int x) throws java.io.IOException;\n" +
+            "    String join(String... parts);\n" +
+            "    interface INested extends TaskInterface<INested> {\n" +
+            "        CompletableFuture<String> hello();\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String GENERIC =
+            "package sample;\n" +
+            "import com.ebay.bascomtask.core.TaskInterface;\n" +
+            "import java.util.concurrent.CompletableFuture;\n" +
+            "public interface IGeneric<T> extends TaskInterface<IGeneric<T>> {\n" +
+            "    CompletableFuture<T> get(T value);\n" +
+            "}\n";
+
+    private static final String RUNNER =
+            "package sample;\n" +
+            "import com.ebay.bascomtask.core.*;\n" +
+            "import java.util.concurrent.CompletableFuture;\n" +
+            "public class Runner implements java.util.function.Supplier<String> {\n" +
+            "    static class Adder implements IAdder {\n" +
+            "        public CompletableFuture<Integer> add(CompletableFuture<Integer> x, int y) {\n" +
+            "            return complete(get(x) + y);\n" +
+            "        }\n" +
+            "        public <T> CompletableFuture<T> echo(T value) { return complete(value); }\n" +
+            "        public int direct(int x) throws java.io.IOException {\n" +
+            "            if (x < 0) throw new java.io.IOException(\"neg\");\n" +
+            "            return x * 2;\n" +
+            "        }\n" +
+            "        public String join(String... parts) { return String.join(\"-\", parts); }\n" +
+            "    }\n" +
+            "    static class Nested implements IAdder.INested {\n" +
+            "        public CompletableFuture<String> hello() { return complete(\"hi\"); }\n" +
+            "    }\n" +
+            "    static class Generic implements IGeneric<String> {\n" +
+            "        public CompletableFuture<String> get(String value) { return complete(value); }\n" +
+            "    }\n" +
+            "    public String get() {\n" +
+            "        Orchestrator $ = Orchestrator.create();\n" +
+            "        IAdder adder = $.task(new Adder()).name(\"adder\");\n" +
+            "        CompletableFuture<Integer> sum = adder.add(adder.add($.fn(() -> 1), 2), 3);\n" +
+            "        int doubled = 0;\n" +
+            "        String thrown;\n" +
+            "        try {\n" +
+            "            doubled = adder.direct(4);\n" +
+            "            adder.direct(-1);\n" +
+            "            thrown = \"none\";\n" +
+            "        } catch (java.io.IOException e) {\n" +
+            "            thrown = e.getMessage();\n" +
+            "        }\n" +
+            "        IGeneric<String> generic = $.task(new Generic());\n" +
+            "        return adder.getName() + \":\" + sum.join() + \":\" + adder.echo(\"e\").join()\n" +
+            "            + \":\" + doubled + \":\" + thrown + \":\" + adder.join(\"a\", \"b\")\n" +
+            "            + \":\" + $.task(new Nested()).hello().join() + \":\" + generic.get(\"g\").join()\n" +
+            "            + \":\" + (adder instanceof GeneratedTaskProxy) + \":\" + (generic instanceof GeneratedTaskProxy);\n" +
+            "    }\n" +
+            "}\n";
+
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("bt-processor");
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Compiles sources with the processor.
+     *
+     * @param namesAndSources alternating simple class names and their source
+     * @return compiler output
+     */
+    private String compile(String... namesAndSources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < namesAndSources.length; i += 2) {
+            Path file = dir.resolve(namesAndSources[i] + ".java");
+            Files.write(file, namesAndSources[i + 1].getBytes(StandardCharsets.UTF_8));
+            files.add(file.toFile());
+        }
+        StringWriter output = new StringWriter();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-d", dir.toString(), "-s", dir.toString(),
+                    "-classpath", System.getProperty("java.class.path"),
+                    "-processor", TaskProxyProcessor.class.getName());
+            boolean ok = compiler.getTask(output, fm, null, options, null, fm.getJavaFileObjectsFromFiles(files)).call();
+            assertTrue(output.toString(), ok);
+        }
+        return output.toString();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedProxiesRun() throws Exception {
+        String output = compile("IAdder", ADDER, "IGeneric", GENERIC, "Runner", RUNNER);
+
+        assertTrue(Files.exists(dir.resolve("sample/IAdder" + TaskProxyProcessor.SUFFIX + ".java")));
+        assertTrue(Files.exists(dir.resolve("sample/IAdder_INested" + TaskProxyProcessor.SUFFIX + ".java")));
+        assertFalse(Files.exists(dir.resolve("sample/IGeneric" + TaskProxyProcessor.SUFFIX + ".java")));
+        assertTrue(output, output.contains("IGeneric"));
+
+        // Calls are passed on directly rather than through an InvocationHandler
+        String generated = new String(Files.readAllBytes(dir.resolve("sample/IAdder" + TaskProxyProcessor.SUFFIX + ".java")),
+                StandardCharsets.UTF_8);
+        assertFalse(generated, generated.contains("java.lang.reflect.Method"));
+        assertTrue(generated, generated.matches("(?s).*dispatchTask\\(m\\d+, new Object\\[]\\{a0, a1}\\).*"));
+        assertTrue(generated, generated.contains("return original.direct(a0);"));
+
+        List<String> services = Files.readAllLines(dir.resolve(TaskProxyProcessor.SERVICES_FILE));
+        assertEquals(Arrays.asList("sample.IAdder_BascomTaskProxy$Factory", "sample.IAdder_INested_BascomTaskProxy$Factory"),
+                services);
+        String config = new String(Files.readAllBytes(dir.resolve(TaskProxyProcessor.REFLECT_CONFIG_FILE)), StandardCharsets.UTF_8);
+        assertTrue(config, config.contains("\"sample.IAdder$INested\""));
+        assertTrue(config, config.contains("\"com.ebay.bascomtask.core.TaskInterface\""));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Supplier<String> runner = (Supplier<String>) loader.loadClass("sample.Runner").newInstance();
+            assertEquals("adder:6:e:8:neg:a-b:hi:g:true:false", runner.get());
+        }
+    }
+}